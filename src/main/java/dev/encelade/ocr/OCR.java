@@ -2,7 +2,9 @@ package dev.encelade.ocr;
 
 import dev.encelade.ocr.model.Page;
 import dev.encelade.ocr.model.Word;
-import net.sourceforge.tess4j.Tesseract;
+import dev.encelade.ocr.TesseractPool.PooledTesseract;
+import dev.encelade.utils.raster.JpegRasterStore;
+import dev.encelade.utils.raster.RasterStoreFactory;
 
 import java.awt.image.BufferedImage;
 import java.util.List;
@@ -18,12 +20,29 @@ public class OCR {
 
     private final static Logger logger = Logger.getLogger(OCR.class.getName());
 
-    private final Tesseract instance;
+    private static final String DEFAULT_LANGUAGE = "eng";
 
-    {
-        instance = new Tesseract();
-        instance.setLanguage("eng");
-        // instance.setTessVariable("load_system_dawg", "0");
+    private final String language;
+    private final RasterStoreFactory rasterStoreFactory;
+
+    public OCR() {
+        this(DEFAULT_LANGUAGE);
+    }
+
+    public OCR(String language) {
+        this(language, JpegRasterStore::new);
+    }
+
+    /**
+     * @param rasterStoreFactory keeps the images of the analyzed pages
+     */
+    public OCR(RasterStoreFactory rasterStoreFactory) {
+        this(DEFAULT_LANGUAGE, rasterStoreFactory);
+    }
+
+    public OCR(String language, RasterStoreFactory rasterStoreFactory) {
+        this.language = language;
+        this.rasterStoreFactory = rasterStoreFactory;
     }
 
     public Page analyze(BufferedImage image, Integer... idx) {
@@ -32,14 +51,23 @@ public class OCR {
 
     public Page analyze(BufferedImage image, List<Integer> idx) {
         Page page = new Page();
+        page.setRasterStoreFactory(rasterStoreFactory);
         page.setOriginalImage(image);
         page.setIdx(idx);
 
         // words
         long beginLines = currentTimeMillis();
 
-        List<Word> words = instance
-                .getWords(image, WORDS.ordinal())
+        TesseractPool pool = TesseractPool.getInstance();
+        List<net.sourceforge.tess4j.Word> tesseractWords;
+        PooledTesseract instance = pool.borrow(language);
+        try {
+            tesseractWords = instance.getWords(image, WORDS.ordinal());
+        } finally {
+            pool.release(instance);
+        }
+
+        List<Word> words = tesseractWords
                 .stream()
                 .map(tesseractWord -> {
                     Word word = new Word(tesseractWord.getBoundingBox(), page);
@@ -51,7 +79,8 @@ public class OCR {
                 .filter(page::isNotWithinMargin)
                 .collect(toList());
 
-        logger.info("detect and filter words " + idx + " -> " + formatMillis(currentTimeMillis() - beginLines));
+        logger.info("detect and filter words " + idx + " -> " + formatMillis(currentTimeMillis() - beginLines)
+                + " [engine wait: " + pool.getAverageWaitMillis() + " ms. average, " + pool.getMaxWaitMillis() + " ms. max]");
 
         page.setWords(words);
 
@@ -0,0 +1,171 @@
+package dev.encelade.ocr;
+
+import net.sourceforge.tess4j.Tesseract;
+
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+import static java.lang.System.nanoTime;
+
+/**
+ * Tesseract engines re-used from one analysis to the next, instead of creating and initializing a new one (i.e.
+ * loading the trained data) for each of them.
+ * <br>There are at most as many engines per language as there are cores. An engine is only used by one thread at a
+ * time, between {@link #borrow(String)} and {@link #release(PooledTesseract)}.
+ * <br>The engines hold native memory until {@link #shutdown()} is called.
+ */
+public class TesseractPool {
+
+    private final static Logger logger = Logger.getLogger(TesseractPool.class.getName());
+
+    // how often a thread waiting for an engine checks that the pool is not shut down
+    private static final long POLL_TIMEOUT_MILLIS = 500;
+
+    private static final TesseractPool INSTANCE = new TesseractPool(Runtime.getRuntime().availableProcessors());
+
+    private final int maxEnginesPerLanguage;
+
+    private final Map<String, BlockingQueue<PooledTesseract>> idleEngines = new ConcurrentHashMap<>();
+    private final Map<String, AtomicInteger> createdEngines = new ConcurrentHashMap<>();
+
+    private final AtomicLong borrowCount = new AtomicLong();
+    private final AtomicLong totalWaitNanos = new AtomicLong();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+
+    private volatile boolean shutdown = false;
+
+    TesseractPool(int maxEnginesPerLanguage) {
+        this.maxEnginesPerLanguage = maxEnginesPerLanguage;
+    }
+
+    public static TesseractPool getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Get an idle engine, create one if the limit is not reached yet, or else wait for one to be released.
+     */
+    public PooledTesseract borrow(String language) {
+        checkNotShutdown();
+        long begin = nanoTime();
+
+        BlockingQueue<PooledTesseract> idle = idleEngines.computeIfAbsent(language, key -> new LinkedBlockingQueue<>());
+        PooledTesseract engine = idle.poll();
+        if (engine == null) {
+            AtomicInteger created = createdEngines.computeIfAbsent(language, key -> new AtomicInteger());
+            if (created.incrementAndGet() <= maxEnginesPerLanguage) {
+                logger.info("new Tesseract engine for " + language + " (" + created.get() + "/" + maxEnginesPerLanguage + ")");
+                engine = new PooledTesseract(language);
+            } else {
+                created.decrementAndGet();
+                try {
+                    while ((engine = idle.poll(POLL_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) == null) {
+                        checkNotShutdown();
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new RuntimeException(e);
+                }
+            }
+        }
+
+        long waitNanos = nanoTime() - begin;
+        borrowCount.incrementAndGet();
+        totalWaitNanos.addAndGet(waitNanos);
+        maxWaitNanos.accumulateAndGet(waitNanos, Math::max);
+
+        return engine;
+    }
+
+    public void release(PooledTesseract engine) {
+        if (shutdown) {
+            dispose(engine);
+        } else {
+            idleEngines.get(engine.language).offer(engine);
+            if (shutdown && idleEngines.get(engine.language).remove(engine)) {
+                // shut down in the meantime
+                dispose(engine);
+            }
+        }
+    }
+
+    /**
+     * Free the native memory of the idle engines, and of the ones in use once they are released. The pool can't be
+     * borrowed from afterwards.
+     */
+    public void shutdown() {
+        shutdown = true;
+        idleEngines.values().forEach(idle -> {
+            PooledTesseract engine;
+            while ((engine = idle.poll()) != null) {
+                dispose(engine);
+            }
+        });
+    }
+
+    private void dispose(PooledTesseract engine) {
+        createdEngines.get(engine.language).decrementAndGet();
+        engine.disposeEngine();
+        logger.info("disposed Tesseract engine for " + engine.language);
+    }
+
+    private void checkNotShutdown() {
+        if (shutdown) {
+            throw new IllegalStateException("Tesseract pool shut down");
+        }
+    }
+
+    public long getBorrowCount() {
+        return borrowCount.get();
+    }
+
+    public double getAverageWaitMillis() {
+        long count = borrowCount.get();
+        return count == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(totalWaitNanos.get()) / (double) count;
+    }
+
+    public long getMaxWaitMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(maxWaitNanos.get());
+    }
+
+    /**
+     * Stays initialized between analyses: tess4j initializes and disposes the native engine on each call, which we
+     * skip after the first one.
+     */
+    public static class PooledTesseract extends Tesseract {
+
+        private final String language;
+        private boolean initialized = false;
+
+        private PooledTesseract(String language) {
+            this.language = language;
+            setLanguage(language);
+        }
+
+        @Override
+        protected void init() {
+            if (!initialized) {
+                super.init();
+                initialized = true;
+            }
+        }
+
+        @Override
+        protected void dispose() {
+            // the native engine is kept for the next analysis
+        }
+
+        private void disposeEngine() {
+            if (initialized) {
+                super.dispose();
+                initialized = false;
+            }
+        }
+    }
+}
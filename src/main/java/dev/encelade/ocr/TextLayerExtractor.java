@@ -0,0 +1,145 @@
+package dev.encelade.ocr;
+
+import dev.encelade.ocr.model.Page;
+import dev.encelade.ocr.model.Word;
+import dev.encelade.utils.raster.RasterStoreFactory;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.text.PDFTextStripper;
+import org.apache.pdfbox.text.TextPosition;
+
+import java.awt.*;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Logger;
+
+import static dev.encelade.utils.TimeUtils.formatMillis;
+import static java.lang.System.currentTimeMillis;
+import static java.util.Collections.singletonList;
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Alternative to {@link OCR} for born-digital documents: the words are built from the text layer of the PDF, with the
+ * positions of the glyphs scaled to the rendered image, and a confidence of 1.
+ */
+public class TextLayerExtractor {
+
+    private final static Logger logger = Logger.getLogger(TextLayerExtractor.class.getName());
+
+    // below that, the page is most likely a scan with only a few words in the text layer (e.g. a page number)
+    private static final int MIN_WORDS = 5;
+
+    private final RasterStoreFactory rasterStoreFactory;
+
+    /**
+     * @param rasterStoreFactory keeps the images of the pages
+     */
+    public TextLayerExtractor(RasterStoreFactory rasterStoreFactory) {
+        this.rasterStoreFactory = rasterStoreFactory;
+    }
+
+    /**
+     * @param pageIdx starts at 1
+     * @return null if the page doesn't have enough extractable text, in which case the OCR must be used
+     */
+    public Page analyze(PDDocument document, BufferedImage image, int pageIdx) throws IOException {
+        long begin = currentTimeMillis();
+
+        WordsStripper stripper = new WordsStripper();
+        stripper.setStartPage(pageIdx);
+        stripper.setEndPage(pageIdx);
+        stripper.getText(document);
+
+        if (stripper.wordsBounds.size() < MIN_WORDS) {
+            return null;
+        }
+
+        PDPage pdPage = document.getPage(pageIdx - 1);
+        PDRectangle cropBox = pdPage.getCropBox();
+        boolean isRotated = pdPage.getRotation() % 180 != 0;
+        double scaleX = image.getWidth() / (isRotated ? cropBox.getHeight() : cropBox.getWidth());
+        double scaleY = image.getHeight() / (isRotated ? cropBox.getWidth() : cropBox.getHeight());
+
+        Page page = new Page();
+        page.setRasterStoreFactory(rasterStoreFactory);
+        page.setOriginalImage(image);
+        page.setIdx(singletonList(pageIdx));
+
+        List<Word> words = new ArrayList<>();
+        for (int i = 0; i < stripper.wordsBounds.size(); i++) {
+            Rectangle2D bounds = stripper.wordsBounds.get(i);
+            int x1 = (int) Math.floor(bounds.getMinX() * scaleX);
+            int y1 = (int) Math.floor(bounds.getMinY() * scaleY);
+            int x2 = (int) Math.ceil(bounds.getMaxX() * scaleX);
+            int y2 = (int) Math.ceil(bounds.getMaxY() * scaleY);
+
+            Word word = new Word(new Rectangle(x1, y1, x2 - x1, y2 - y1), page);
+            word.setText(stripper.wordsText.get(i));
+            word.setConfidence(1);
+            words.add(word);
+        }
+
+        page.setWords(words
+                .stream()
+                .filter(Word::isValid)
+                .filter(page::isNotWithinMargin)
+                .collect(toList()));
+
+        logger.info("extract words from text layer [" + pageIdx + "] -> " + formatMillis(currentTimeMillis() - begin));
+
+        return page;
+    }
+
+    /**
+     * Collects the words in PDF units, the origin being the top left corner of the (rotated) page.
+     */
+    private static class WordsStripper extends PDFTextStripper {
+
+        private final List<String> wordsText = new ArrayList<>();
+        private final List<Rectangle2D> wordsBounds = new ArrayList<>();
+
+        private final StringBuilder currentText = new StringBuilder();
+        private Rectangle2D currentBounds;
+
+        WordsStripper() throws IOException {
+            setSortByPosition(true);
+        }
+
+        @Override
+        protected void writeString(String text, List<TextPosition> textPositions) {
+            for (TextPosition textPosition : textPositions) {
+                String unicode = textPosition.getUnicode();
+                if (unicode == null || unicode.trim().isEmpty()) {
+                    endWord();
+                } else {
+                    Rectangle2D glyphBounds = new Rectangle2D.Float(
+                            textPosition.getXDirAdj(),
+                            textPosition.getYDirAdj() - textPosition.getHeightDir(),
+                            textPosition.getWidthDirAdj(),
+                            textPosition.getHeightDir());
+
+                    if (currentBounds == null) {
+                        currentBounds = glyphBounds;
+                    } else {
+                        currentBounds = currentBounds.createUnion(glyphBounds);
+                    }
+                    currentText.append(unicode);
+                }
+            }
+            endWord();
+        }
+
+        private void endWord() {
+            if (currentBounds != null) {
+                wordsText.add(currentText.toString());
+                wordsBounds.add(currentBounds);
+            }
+            currentText.setLength(0);
+            currentBounds = null;
+        }
+    }
+}
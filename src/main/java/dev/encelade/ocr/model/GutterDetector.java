@@ -0,0 +1,107 @@
+package dev.encelade.ocr.model;
+
+import java.util.Arrays;
+
+/**
+ * Find the gutter of a two-page layout from the number of words covering each column of pixels between 40% and 60% of
+ * the width of the page: the gutter is the middle of the longest run of columns covered by the fewest words.
+ * <br>That run must be wider than the space between 2 words, or else a sparse page (title, few centered lines) would
+ * be split wherever its words happen to leave a column free on all the lines.
+ */
+class GutterDetector {
+
+    private static final double FROM_RATIO = 0.4;
+    private static final double TO_RATIO = 0.6;
+
+    // min width of the gutter, of the width of the page (it must also be as wide as the median height of the words)
+    private static final double MIN_GUTTER_WIDTH_RATIO = 0.02;
+
+    private final WordsGeometry geometry;
+    private final int width;
+    private final int height;
+
+    GutterDetector(WordsGeometry geometry, int width, int height) {
+        this.geometry = geometry;
+        this.width = width;
+        this.height = height;
+    }
+
+    /**
+     * @param maxRatioIntersectingWords ratio of the words a vertical line can intersect to still be a gutter
+     * @return the x of the gutter, or -1 if there is none
+     */
+    int detect(double maxRatioIntersectingWords) {
+        int from = (int) (width * FROM_RATIO);
+        int to = (int) (width * TO_RATIO);
+        if (geometry.size() == 0 || to <= from) {
+            return -1;
+        }
+
+        int[] coverage = computeCoverage(from, to);
+
+        int minCoverage = Integer.MAX_VALUE;
+        for (int count : coverage) {
+            minCoverage = Math.min(minCoverage, count);
+        }
+
+        int bestRunBegin = 0;
+        int bestRunLength = 0;
+        int i = 0;
+        while (i < coverage.length) {
+            if (coverage[i] == minCoverage) {
+                int runBegin = i;
+                while (i < coverage.length && coverage[i] == minCoverage) {
+                    i++;
+                }
+                if (i - runBegin > bestRunLength) {
+                    bestRunBegin = runBegin;
+                    bestRunLength = i - runBegin;
+                }
+            } else {
+                i++;
+            }
+        }
+
+        if (minCoverage / (double) geometry.size() > maxRatioIntersectingWords || bestRunLength < getMinGutterWidth()) {
+            return -1;
+        }
+
+        return from + bestRunBegin + (bestRunLength - 1) / 2;
+    }
+
+    private double getMinGutterWidth() {
+        int[] heights = Arrays.copyOf(geometry.height, geometry.size());
+        Arrays.sort(heights);
+        double medianWordHeight = heights[heights.length / 2];
+
+        return Math.max(width * MIN_GUTTER_WIDTH_RATIO, medianWordHeight);
+    }
+
+    /**
+     * For each x in [from, to], the number of words a vertical line across the page at x intersects (the edges of the
+     * words included, as with {@link java.awt.Rectangle#intersectsLine(double, double, double, double)}).
+     */
+    private int[] computeCoverage(int from, int to) {
+        int[] coverage = new int[to - from + 2];
+
+        for (int i = 0; i < geometry.size(); i++) {
+            int x1 = geometry.x[i];
+            int x2 = geometry.x[i] + geometry.width[i];
+            boolean crossesPage = geometry.width[i] > 0 && geometry.height[i] > 0
+                    && geometry.y[i] <= height && geometry.y[i] + geometry.height[i] >= 0;
+
+            if (crossesPage && x2 >= from && x1 <= to) {
+                coverage[Math.max(x1, from) - from]++;
+                coverage[Math.min(x2, to) - from + 1]--;
+            }
+        }
+
+        for (int i = 1; i < coverage.length; i++) {
+            coverage[i] += coverage[i - 1];
+        }
+
+        int[] result = new int[to - from + 1];
+        System.arraycopy(coverage, 0, result, 0, result.length);
+        return result;
+    }
+}
@@ -6,36 +6,38 @@ import dev.encelade.processing.aggregation.SameLinePredicate;
 import dev.encelade.processing.aggregation.SameTextBlockPredicate;
 import dev.encelade.processing.corrections.AngleCorrection;
 import dev.encelade.processing.corrections.AngleCorrectionQuadrilateral;
+import dev.encelade.utils.GeometryUtils;
+import dev.encelade.utils.raster.JpegRasterStore;
+import dev.encelade.utils.raster.RasterStore;
+import dev.encelade.utils.raster.RasterStoreFactory;
 import lombok.Getter;
 import lombok.Setter;
 import org.apache.commons.math3.stat.descriptive.DescriptiveStatistics;
 
-import javax.imageio.ImageIO;
 import java.awt.*;
 import java.awt.geom.Line2D;
+import java.awt.geom.Rectangle2D;
 import java.awt.image.BufferedImage;
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
-import java.io.IOException;
 import java.util.*;
 import java.util.List;
+import java.util.function.Predicate;
 import java.util.logging.Logger;
 import java.util.stream.IntStream;
 
 import static dev.encelade.ocr.model.Side.*;
 import static dev.encelade.ocr.model.TextZone.mergeHorizontally;
-import static dev.encelade.utils.GeometryUtils.intersection;
 import static dev.encelade.utils.GeometryUtils.mergeBlocks;
+import static dev.encelade.utils.GeometryUtils.mergeRectangles;
 import static java.util.Arrays.asList;
 import static java.util.Collections.min;
-import static java.util.Comparator.comparingDouble;
+import static java.util.Collections.unmodifiableList;
 import static java.util.Comparator.comparingInt;
 import static java.util.stream.Collectors.toList;
-import static java.util.stream.Collectors.toMap;
 import static org.apache.commons.collections4.CollectionUtils.isNotEmpty;
 
 /**
- * The image data is stored as a byte[] instead of a {@link BufferedImage} to consume less space in the heap.
+ * The image data is kept in a {@link RasterStore} (JPEG by default) instead of a {@link BufferedImage} to consume less
+ * space in the heap. The pages derived from this one (layout, angle correction) use the same kind of store.
  */
 public class Page {
 
@@ -44,22 +46,35 @@ public class Page {
     private final static float MAX_RATIO_INTERSECTING_WORDS_TWO_PAGES_LAYOUT = 0.01f;
 
     @Getter
-    @Setter
     private List<Integer> idx;
 
     private boolean cachedEnabled = false;
     private BufferedImage imageCache;
-    private byte[] imageData;
+    private RasterStore rasterStore;
+
+    @Getter
+    @Setter
+    private RasterStoreFactory rasterStoreFactory = JpegRasterStore::new;
+
     private int imageWidth;
     private int imageHeight;
 
     @Getter
-    @Setter
     private List<Word> words;
 
+    private WordsGeometry wordsGeometry;
+    private WordsIndex wordsIndex;
+
+    // depend on the index and the size of the page
+    private List<Rectangle> margins;
+
     @Getter
     private List<TextLine> lines;
 
+    // computed when the angle correction compares pages, reset when the words or the lines change
+    private Double wordsOverlappingArea;
+    private Double linesOverlappingArea;
+
     @Getter
     private List<TextBlock> textBlocks;
 
@@ -81,22 +96,42 @@ public class Page {
     @Getter
     private int splitIn = 1;
 
-    private static byte[] compressImage(BufferedImage bufferedImage) {
-        try {
-            ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
-            ImageIO.write(bufferedImage, "jpg", byteArrayOutputStream);
-            return byteArrayOutputStream.toByteArray();
-        } catch (IOException e) {
-            throw new RuntimeException(e);
-        }
+    /**
+     * Page without image data, until {@link #setOriginalImage(BufferedImage)} is called.
+     */
+    public static Page withoutImage(List<Integer> idx, int width, int height, RasterStoreFactory rasterStoreFactory) {
+        Page page = new Page();
+        page.setRasterStoreFactory(rasterStoreFactory);
+        page.setIdx(idx);
+        page.imageWidth = width;
+        page.imageHeight = height;
+        return page;
     }
 
-    private static BufferedImage decompressImage(byte[] imageData) {
-        try {
-            return ImageIO.read(new ByteArrayInputStream(imageData));
-        } catch (IOException e) {
-            throw new RuntimeException(e);
-        }
+    public void setIdx(List<Integer> idx) {
+        this.idx = idx;
+        this.margins = null;
+    }
+
+    public void setWords(List<Word> words) {
+        this.words = words;
+        this.wordsOverlappingArea = null;
+        this.wordsGeometry = words == null ? null : new WordsGeometry(words);
+        this.wordsIndex = words == null ? null : new WordsIndex(words, wordsGeometry, imageWidth, imageHeight);
+    }
+
+    /**
+     * @see WordsIndex#getWordsNear(Rectangle2D)
+     */
+    List<Word> getWordsNear(Rectangle2D area) {
+        return wordsIndex.getWordsNear(area);
+    }
+
+    /**
+     * @see WordsIndex#hasWordIntersecting(Rectangle, Predicate)
+     */
+    boolean hasWordIntersecting(Rectangle rectangle, Predicate<Word> filter) {
+        return wordsIndex.hasWordIntersecting(rectangle, filter);
     }
 
     public void enableImageCache() {
@@ -106,14 +141,18 @@ public class Page {
     public void setOriginalImage(BufferedImage originalImage) {
         this.imageWidth = originalImage.getWidth();
         this.imageHeight = originalImage.getHeight();
-        this.imageData = compressImage(originalImage);
+        this.margins = null;
+        if (rasterStore != null) {
+            rasterStore.release();
+        }
+        this.rasterStore = rasterStoreFactory.store(originalImage);
     }
 
     public BufferedImage getOriginalImage() {
         if (imageCache != null) {
             return imageCache;
         } else {
-            BufferedImage image = decompressImage(imageData);
+            BufferedImage image = rasterStore.getImage();
             if (cachedEnabled) {
                 imageCache = image;
             }
@@ -122,7 +161,10 @@ public class Page {
     }
 
     public void deleteImageData() {
-        this.imageData = null;
+        if (rasterStore != null) {
+            rasterStore.release();
+        }
+        this.rasterStore = null;
         this.imageCache = null;
     }
 
@@ -139,21 +181,21 @@ public class Page {
     }
 
     public double getAverageConfidence() {
-        return words.stream().mapToDouble(Word::getConfidence).average().getAsDouble();
+        return wordsGeometry.confidences().average().getAsDouble();
     }
 
     public double getStandardDeviationConfidence() {
         DescriptiveStatistics stats = new DescriptiveStatistics();
-        words.stream().mapToDouble(Word::getConfidence).forEach(stats::addValue);
+        wordsGeometry.confidences().forEach(stats::addValue);
         return stats.getStandardDeviation();
     }
 
     public double getMinConfidence() {
-        return words.stream().mapToDouble(Word::getConfidence).min().getAsDouble();
+        return wordsGeometry.confidences().min().getAsDouble();
     }
 
     public double getMaxConfidence() {
-        return words.stream().mapToDouble(Word::getConfidence).max().getAsDouble();
+        return wordsGeometry.confidences().max().getAsDouble();
     }
 
     public int computeParagraphXOffSet() {
@@ -180,8 +222,15 @@ public class Page {
     }
 
     public void detectCorrectiveAngle() {
+        detectCorrectiveAngle(false);
+    }
+
+    /**
+     * @param geometric see {@link AngleCorrection#AngleCorrection(Page, boolean)}
+     */
+    public void detectCorrectiveAngle(boolean geometric) {
         if (isNotEmpty(textBlocks)) {
-            angleCorrection = new AngleCorrection(this);
+            angleCorrection = new AngleCorrection(this, geometric);
             angleCorrection.detect();
         }
     }
@@ -203,7 +252,10 @@ public class Page {
     }
 
     public double getWordsOverlappingArea() {
-        return getOverlappingArea(words);
+        if (wordsOverlappingArea == null) {
+            wordsOverlappingArea = getOverlappingArea(words);
+        }
+        return wordsOverlappingArea;
     }
 
     public double getWordsOverlappingRatio() {
@@ -215,7 +267,10 @@ public class Page {
     }
 
     public double getLinesOverlappingArea() {
-        return getOverlappingArea(lines);
+        if (linesOverlappingArea == null) {
+            linesOverlappingArea = getOverlappingArea(lines);
+        }
+        return linesOverlappingArea;
     }
 
     public boolean isNotWithinMargin(TextZone textZone) {
@@ -223,12 +278,22 @@ public class Page {
     }
 
     private boolean isWithinMargin(TextZone textZone) {
-        return getMargins()
-                .stream()
-                .anyMatch(rectangle -> rectangle.intersects(textZone.getRectangle()));
+        for (Rectangle margin : getMargins()) {
+            if (margin.intersects(textZone.getRectangle())) {
+                return true;
+            }
+        }
+        return false;
     }
 
     public List<Rectangle> getMargins() {
+        if (margins == null) {
+            margins = unmodifiableList(computeMargins());
+        }
+        return margins;
+    }
+
+    private List<Rectangle> computeMargins() {
         List<Side> allSides = listAllSides();
 
         if (idx.size() == 2) {
@@ -254,22 +319,11 @@ public class Page {
     }
 
     private static <TZ extends TextZone> double getOverlappingArea(List<TZ> textZones) {
-        double overlappingArea = 0;
-
-        if (textZones != null) {
-            for (TextZone textZone1 : textZones) {
-                for (TextZone textZone2 : textZones) {
-                    if (!Objects.equals(textZone1, textZone2)) {
-                        Rectangle intersection = intersection(textZone1.getRectangle(), textZone2.getRectangle());
-                        if (intersection != null) {
-                            overlappingArea += intersection.width * intersection.height * 0.5;
-                        }
-                    }
-                }
-            }
+        if (textZones == null) {
+            return 0;
         }
 
-        return overlappingArea;
+        return GeometryUtils.getOverlappingArea(textZones.stream().map(TextZone::getRectangle).collect(toList()));
     }
 
     public Page correctAngle() {
@@ -286,42 +340,18 @@ public class Page {
         return dividingLine != null;
     }
 
+    /**
+     * See {@link GutterDetector}.
+     */
     public boolean detectTwoPagesLayout() {
         if (isNotEmpty(words)) {
-            int from = (int) (getWidth() * 0.4);
-            int to = (int) (getWidth() * 0.6);
-            int nbrOfTestLines = 20;
-            int stepSize = (int) ((to - from) / (double) nbrOfTestLines);
-
-            Set<Map.Entry<Line2D.Double, Double>> entries = IntStream
-                    .iterate(from, x -> x + stepSize).limit(nbrOfTestLines)
-                    .parallel()
-                    .mapToObj(x -> new Line2D.Double(x, 0, x, getHeight()))
-                    .collect(toMap(
-                            line -> line,
-                            line -> countIntersectingWords(line) / words.size()) // Line2D -> intersecting words ratio
-                    )
-                    .entrySet();
-
-            // entries.forEach(entry -> logger.info(PERCENT_FORMAT.format(entry.getValue())));
-
-            dividingLine = entries
-                    .stream()
-                    .min(comparingDouble(Map.Entry::getValue))
-                    .map(entry -> entry.getValue() <= MAX_RATIO_INTERSECTING_WORDS_TWO_PAGES_LAYOUT ? entry.getKey() : null)
-                    .orElse(null);
+            int x = new GutterDetector(wordsGeometry, getWidth(), getHeight()).detect(MAX_RATIO_INTERSECTING_WORDS_TWO_PAGES_LAYOUT);
+            dividingLine = x < 0 ? null : new Line2D.Double(x, 0, x, getHeight());
         }
 
         return dividingLine != null;
     }
 
-    // TODO: maybe count word area
-    private double countIntersectingWords(Line2D dividingLine) {
-        return words.stream()
-                .filter(word -> word.intersects(dividingLine))
-                .count();
-    }
-
     private List<Rectangle> getLayoutRectangles() {
         assert dividingLine != null && dividingLine.getX1() == dividingLine.getX2();
 
@@ -337,24 +367,74 @@ public class Page {
     }
 
     public List<Page> splitForLayout() {
+        return splitForLayout(false);
+    }
+
+    /**
+     * @param reuseWords build each half from the words already detected on the whole page, instead of running the OCR
+     *                   again on it. A word crossing the dividing line goes to the half having most of its area, and
+     *                   that half is analyzed again since the word is cut on its image.
+     */
+    public List<Page> splitForLayout(boolean reuseWords) {
         if (!hasLayoutData()) {
             throw new IllegalStateException();
         }
 
         assert idx.size() == 1;
 
+        int x = (int) dividingLine.getX1();
+
         return getLayoutRectangles().stream()
                 .map(layoutRectangle -> {
-                    // TODO: can we still use the division without re-detecting? if the PDF quality is good enough? --> if the confidence std dev is high (>20)
                     BufferedImage subImage = getOriginalImage().getSubimage(layoutRectangle.x, layoutRectangle.y, layoutRectangle.width, layoutRectangle.height);
                     int subIdx = (layoutRectangle.x == 0 ? 1 : 2);
-                    Page split = new OCR().analyze(subImage, idx.get(0), subIdx);
+
+                    List<Word> sideWords = reuseWords ? getWordsOfSide(x, subIdx) : null;
+
+                    Page split = sideWords == null ?
+                            new OCR(rasterStoreFactory).analyze(subImage, idx.get(0), subIdx) :
+                            fromWords(subImage, asList(idx.get(0), subIdx), sideWords, -layoutRectangle.x);
                     split.splitIn = 2;
                     return split;
                 })
                 .collect(toList());
     }
 
+    private Page fromWords(BufferedImage image, List<Integer> idx, List<Word> words, int dx) {
+        Page page = new Page();
+        page.setRasterStoreFactory(rasterStoreFactory);
+        page.setOriginalImage(image);
+        page.setIdx(idx);
+        page.setWords(words
+                .stream()
+                .map(word -> word.translate(dx, page))
+                .filter(Word::isValid)
+                .filter(page::isNotWithinMargin)
+                .collect(toList()));
+        return page;
+    }
+
+    /**
+     * @param subIdx 1 for the left side of x, 2 for the right side
+     * @return null if a word of that side crosses x
+     */
+    private List<Word> getWordsOfSide(int x, int subIdx) {
+        List<Word> sideWords = new ArrayList<>();
+        for (Word word : words) {
+            int leftWidth = Math.max(0, Math.min(word.getX2(), x) - word.getX1());
+            int rightWidth = Math.max(0, word.getX2() - Math.max(word.getX1(), x));
+            boolean isLeft = leftWidth >= rightWidth;
+
+            if (isLeft == (subIdx == 1)) {
+                if (leftWidth > 0 && rightWidth > 0) {
+                    return null;
+                }
+                sideWords.add(word);
+            }
+        }
+        return sideWords;
+    }
+
     public void detectTextBlocks() {
         detectLinesFromWords();
         mergeLinesHorizontally();
@@ -367,6 +447,7 @@ public class Page {
             Aggregator<Word> aggregator = new Aggregator<>(new SameLinePredicate(), words);
 
             // TODO: make the merge in the aggregator as well
+            linesOverlappingArea = null;
             lines = aggregator.buildGroups()
                     .stream()
                     .map(group -> new TextLine(mergeBlocks(group), this))
@@ -389,39 +470,77 @@ public class Page {
         }
     }
 
-    private static List<TextBlock> cleanUp(List<TextBlock> textBlocks) {
-        Set<TextBlock> allTextBlocks = new HashSet<>(textBlocks);
+    /**
+     * Merge the text blocks intersecting each other, until none does.
+     * <br>The blocks are grouped with a union-find: each pass sweeps the bounds of the groups by x and joins the ones
+     * that intersect, and a group that grew may intersect other groups at the next pass.
+     */
+    static List<TextBlock> cleanUp(List<TextBlock> textBlocks) {
+        List<TextBlock> distinctTextBlocks = new ArrayList<>(new LinkedHashSet<>(textBlocks));
+        int n = distinctTextBlocks.size();
+
+        int[] parent = new int[n];
+        int[] size = new int[n];
+        Rectangle[] bounds = new Rectangle[n];
+        for (int i = 0; i < n; i++) {
+            parent[i] = i;
+            size[i] = 1;
+            bounds[i] = distinctTextBlocks.get(i).getRectangle();
+        }
+
         boolean didMerge;
         do {
             didMerge = false;
-            List<TextBlock> toRemove = new ArrayList<>();
-            List<TextBlock> merged = new ArrayList<>();
-            for (TextBlock textZone1 : allTextBlocks) {
-                for (TextBlock textZone2 : allTextBlocks) {
-                    if (!Objects.equals(textZone1, textZone2) && canBeMerged(textZone1, textZone2)) {
-                        merged.add(merge(textZone1, textZone2));
-                        toRemove.add(textZone1);
-                        toRemove.add(textZone2);
+
+            List<Integer> roots = IntStream.range(0, n)
+                    .filter(i -> parent[i] == i)
+                    .boxed()
+                    .sorted(comparingInt(i -> bounds[i].x))
+                    .collect(toList());
+
+            List<Integer> active = new ArrayList<>();
+            for (int root : roots) {
+                active.removeIf(other -> bounds[other].x + bounds[other].width <= bounds[root].x);
+
+                Integer mergedInto = null;
+                Iterator<Integer> iterator = active.iterator();
+                while (iterator.hasNext()) {
+                    int other = iterator.next();
+                    if (bounds[other].intersects(bounds[root])) {
+                        if (mergedInto == null) {
+                            mergedInto = other;
+                            join(root, other, parent, size, bounds);
+                        } else {
+                            join(other, mergedInto, parent, size, bounds);
+                            iterator.remove();
+                        }
                         didMerge = true;
                     }
                 }
+
+                if (mergedInto == null) {
+                    active.add(root);
+                }
             }
-            allTextBlocks.removeAll(toRemove);
-            allTextBlocks.addAll(merged);
         } while (didMerge);
 
-        List<TextBlock> filterTextBlocks = new ArrayList<>(allTextBlocks);
+        List<TextBlock> filterTextBlocks = IntStream.range(0, n)
+                .filter(i -> parent[i] == i)
+                .mapToObj(i -> size[i] == 1 ? distinctTextBlocks.get(i) : new TextBlock(bounds[i], distinctTextBlocks.get(i).getPage()))
+                .distinct()
+                .collect(toList());
+
         filterTextBlocks.sort(comparingInt(TextZone::getY1));
         return filterTextBlocks;
     }
 
-    private static TextBlock merge(TextBlock textBlock1, TextBlock textBlock2) {
-        Rectangle rectangle = mergeBlocks(asList(textBlock1, textBlock2));
-        return new TextBlock(rectangle, textBlock1.getPage());
-    }
-
-    private static boolean canBeMerged(TextBlock textBlock1, TextBlock textBlock2) {
-        return textBlock1.getRectangle().intersects(textBlock2.getRectangle());
+    /**
+     * Join the group of root (which is not a root any more) into the one of into.
+     */
+    private static void join(int root, int into, int[] parent, int[] size, Rectangle[] bounds) {
+        parent[root] = into;
+        size[into] += size[root];
+        bounds[into] = mergeRectangles(asList(bounds[into], bounds[root]));
     }
 
     /**
@@ -442,48 +561,69 @@ public class Page {
 
     private void detectWhiteSpaces() {
         if (isNotEmpty(textBlocks)) { // FIXME: paragraphs?
-            // scan and collect
-            List<Integer> whiteSpaceCoordinates = new ArrayList<>();
-
-            Line2D.Double scanner;
-            boolean isIntersecting = true;
-            for (int y = 0; y < getHeight(); y += 1) {
-                scanner = new Line2D.Double(0, y, getWidth(), y);
-                if (textIntersects(scanner)) {
-                    if (!isIntersecting) {
-                        whiteSpaceCoordinates.add(y);
-                    }
-                    isIntersecting = true;
-                } else {
-                    if (isIntersecting) {
-                        whiteSpaceCoordinates.add(y);
-                    }
-                    isIntersecting = false;
-                }
-            }
-            if (!isIntersecting) {
-                whiteSpaceCoordinates.add(getHeight());
-            }
-            assert whiteSpaceCoordinates.size() % 2 == 0;
-
-            // build
-            whiteSpaces = IntStream
-                    .iterate(0, i -> i + 2)
-                    .limit(whiteSpaceCoordinates.size() / 2)
-                    .mapToObj(i -> {
-                        int y1 = whiteSpaceCoordinates.get(i);
-                        int y2 = whiteSpaceCoordinates.get(i + 1);
-                        return new Rectangle(0, y1, getWidth(), y2 - y1);
-                    })
+            List<Rectangle> paragraphRectangles = paragraphs
+                    .stream()
+                    .map(TextZone::getRectangle)
+                    .collect(toList());
+
+            whiteSpaces = getWhiteSpaceRectangles(paragraphRectangles, getWidth(), getHeight())
+                    .stream()
                     .map(rectangle -> new WhiteSpace(rectangle, this))
                     .collect(toList());
         }
     }
 
-    private boolean textIntersects(Shape shape) {
-        return paragraphs
+    /**
+     * The bands of rows of the page that don't cross any paragraph, i.e. the rows y for which the horizontal line from
+     * (0, y) to (width, y) doesn't intersect any of them.
+     */
+    static List<Rectangle> getWhiteSpaceRectangles(List<Rectangle> paragraphRectangles, int width, int height) {
+        // rows crossing the paragraphs, as intervals [y1, y2] sorted by y1
+        List<int[]> textRows = paragraphRectangles
                 .stream()
-                .anyMatch(paragraph -> shape.intersects(paragraph.getRectangle()));
+                .filter(rectangle -> isCrossedByRows(rectangle, width))
+                .map(rectangle -> new int[]{Math.max(0, rectangle.y), Math.min(height - 1, rectangle.y + rectangle.height)})
+                .filter(rows -> rows[0] <= rows[1])
+                .sorted(comparingInt(rows -> rows[0]))
+                .collect(toList());
+
+        // collect the rows in between
+        List<Integer> whiteSpaceCoordinates = new ArrayList<>();
+        int y = 0;
+        for (int[] rows : textRows) {
+            if (rows[0] > y) {
+                whiteSpaceCoordinates.add(y);
+                whiteSpaceCoordinates.add(rows[0]);
+            }
+            y = Math.max(y, rows[1] + 1);
+        }
+        if (y < height) {
+            whiteSpaceCoordinates.add(y);
+            whiteSpaceCoordinates.add(height);
+        }
+        assert whiteSpaceCoordinates.size() % 2 == 0;
+
+        // build
+        return IntStream
+                .iterate(0, i -> i + 2)
+                .limit(whiteSpaceCoordinates.size() / 2)
+                .mapToObj(i -> {
+                    int y1 = whiteSpaceCoordinates.get(i);
+                    int y2 = whiteSpaceCoordinates.get(i + 1);
+                    return new Rectangle(0, y1, width, y2 - y1);
+                })
+                .collect(toList());
+    }
+
+    /**
+     * If a horizontal line across the page intersects the rectangle (see {@link Rectangle#intersectsLine(Line2D)}),
+     * its y being between rectangle.y and rectangle.y + rectangle.height (included).
+     */
+    private static boolean isCrossedByRows(Rectangle rectangle, int width) {
+        return rectangle.width > 0
+                && rectangle.height > 0
+                && rectangle.x <= width
+                && rectangle.x + rectangle.width >= 0;
     }
 
     public void detectParagraphs() {
@@ -507,6 +647,7 @@ public class Page {
     }
 
     private void mergeLinesHorizontally() {
+        linesOverlappingArea = null;
         lines = mergeHorizontally(lines);
     }
 
@@ -1,14 +1,12 @@
 package dev.encelade.ocr.model;
 
 import java.awt.*;
-import java.awt.geom.Line2D;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.NoSuchElementException;
 import java.util.logging.Logger;
-import java.util.stream.IntStream;
 
 import static java.util.Collections.singletonList;
-import static java.util.Comparator.comparing;
 
 public class Paragraph extends WordsContainerTextZone {
 
@@ -25,35 +23,69 @@ public class Paragraph extends WordsContainerTextZone {
 
         logger.info("cut " + toString() + " into " + pieces);
 
+        List<Integer> yCuts = getYCuts(pieces);
+
+        if (yCuts.size() < 1) {
+            return singletonList(this);
+        } else {
+            return sliceOnY(yCuts, Paragraph.class);
+        }
+    }
+
+    /**
+     * Relative y of the cuts, each one moved to the row crossing the fewest words around its position.
+     */
+    List<Integer> getYCuts(int pieces) {
+        int[] collisions = countCollisionsPerRow();
+
         List<Integer> yCuts = new ArrayList<>();
         double percent = 1d / (double) pieces;
         logger.info("percent: " + percent);
         for (int i = 1; i < pieces; i++) {
-            int yCut = adjustCutY(getHeight() * percent * i);
+            int yCut = adjustCutY(getHeight() * percent * i, collisions);
             if (isValidCutToAdd(yCut, yCuts)) {
                 yCuts.add(yCut);
             }
         }
 
         logger.info("yCuts: " + yCuts);
+        return yCuts;
+    }
 
-        if (yCuts.size() < 1) {
-            return singletonList(this);
-        } else {
-            return sliceOnY(yCuts, Paragraph.class);
+    /**
+     * Number of included words a horizontal line (from x = 0 to x = width) would intersect at each relative y, in
+     * [0, 2 * height[ which contains all the values tested by {@link #adjustCutY(double, int[])}.
+     */
+    private int[] countCollisionsPerRow() {
+        int[] collisions = new int[2 * getHeight() + 1];
+
+        for (Word word : getIncludedWords()) {
+            // as Rectangle#intersectsLine, edges included
+            if (word.getWidth() > 0 && word.getHeight() > 0 && word.getX1() <= getWidth() && word.getX2() >= 0) {
+                int from = Math.max(0, word.getY1() - getY1());
+                int to = Math.min(collisions.length - 1, word.getY2() - getY1() + 1);
+                if (from < to) {
+                    collisions[from]++;
+                    collisions[to]--;
+                }
+            }
         }
+
+        for (int y = 1; y < collisions.length; y++) {
+            collisions[y] += collisions[y - 1];
+        }
+
+        return collisions;
     }
 
     /**
-     * Find the value of y with the minimum number of collisions with words
+     * Find the value of y with the minimum number of collisions with words (the first one if several)
      */
-    private int adjustCutY(double relativeCutY) {
+    private int adjustCutY(double relativeCutY, int[] collisions) {
         if (relativeCutY <= 0) {
             throw new IllegalArgumentException();
         }
 
-        List<Word> words = getIncludedWords();
-
         int downMargin = (int) (0.03 * getHeight());
         int upMargin = (int) (0.03 * getHeight());
 
@@ -62,17 +94,19 @@ public class Paragraph extends WordsContainerTextZone {
 
         logger.info(relativeCutY + " to adjust in [" + from + "-" + to + "] [margins: " + downMargin + ", " + upMargin + "]");
 
-        Line2D.Double minimalCollisionsLine = IntStream
-                .iterate(from, y -> y + 1)
-                .limit(to)
-                .mapToObj(y -> new Line2D.Double(0, y + getY1(), getWidth(), y + getY1()))
-                .min(comparing(line -> words.stream().filter(word -> word.intersects(line)).count()))
-                .get();
+        if (to <= 0) {
+            throw new NoSuchElementException();
+        }
 
-        assert minimalCollisionsLine.y1 == minimalCollisionsLine.y2;
+        int minimalCollisionsY = from;
+        for (int y = from + 1; y < from + to; y++) {
+            if (collisions[y] < collisions[minimalCollisionsY]) {
+                minimalCollisionsY = y;
+            }
+        }
 
-        logger.info("resulting yCut --> " + (minimalCollisionsLine.y1 - getY1()));
-        return (int) (minimalCollisionsLine.y1 - getY1());
+        logger.info("resulting yCut --> " + minimalCollisionsY);
+        return minimalCollisionsY;
     }
 
     @Override
@@ -2,14 +2,12 @@ package dev.encelade.ocr.model;
 
 import java.awt.*;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
 import java.util.logging.Logger;
 
 import static java.awt.Color.*;
 import static java.util.Arrays.asList;
 import static java.util.stream.Collectors.toList;
-import static java.util.stream.IntStream.rangeClosed;
 
 public enum Side {
 
@@ -47,31 +45,42 @@ public enum Side {
     }
 
     public List<Point> getPoints(TextZone textZone, boolean clockWise) {
+        List<Point> points = new ArrayList<>();
+        forEachPoint(textZone, clockWise, (x, y) -> points.add(new Point(x, y)));
+        return points;
+    }
+
+    /**
+     * Visit the points of {@link #getPoints(TextZone, boolean)}, in the same order, without creating them.
+     */
+    public void forEachPoint(TextZone textZone, boolean clockWise, PointConsumer consumer) {
         Point beginPoint = getBeginPoint(textZone, clockWise);
         Point endPoint = getEndPoint(textZone, clockWise);
 
         int direction = getDirection(clockWise);
 
-        List<Point> points;
         if (isHorizontal()) {
             // X varies
             int from = Math.min(beginPoint.x, endPoint.x);
             int to = Math.max(beginPoint.x, endPoint.x);
 
-            points = rangeClosed(from, to).mapToObj(x -> new Point(x, beginPoint.y)).collect(toList());
+            for (int i = 0; i <= to - from; i++) {
+                consumer.accept(direction < 0 ? to - i : from + i, beginPoint.y);
+            }
         } else {
             // Y varies
             int from = Math.min(beginPoint.y, endPoint.y);
             int to = Math.max(beginPoint.y, endPoint.y);
 
-            points = rangeClosed(from, to).mapToObj(y -> new Point(beginPoint.x, y)).collect(toList());
-        }
-
-        if (direction < 0) {
-            Collections.reverse(points);
+            for (int i = 0; i <= to - from; i++) {
+                consumer.accept(beginPoint.x, direction < 0 ? to - i : from + i);
+            }
         }
+    }
 
-        return points;
+    @FunctionalInterface
+    public interface PointConsumer {
+        void accept(int x, int y);
     }
 
     static Point getPoint(TextZone textZone, Side side1, Side side2) {
@@ -1,8 +1,6 @@
 package dev.encelade.ocr.model;
 
 import dev.encelade.utils.GeometryUtils;
-import lombok.Getter;
-import lombok.Setter;
 
 import java.awt.*;
 import java.awt.image.BufferedImage;
@@ -29,10 +27,6 @@ public abstract class TextZone {
     private Page page;
     private Color markColor;
 
-    @Getter
-    @Setter
-    private BufferedImage subImage;
-
     public TextZone(Rectangle rectangle, Page page) {
         this.rectangle = rectangle;
         this.page = page;
@@ -60,6 +54,7 @@ public abstract class TextZone {
 
     public void setPage(Page page) {
         this.page = page;
+        resetCaches();
     }
 
     public Rectangle getRectangle() {
@@ -74,12 +69,27 @@ public abstract class TextZone {
     }
 
     public Rectangle getWidthExpandedRectangle() {
-        int w = (int) (getWidth() * 0.2); // e.g. 0.10 means 10% on each side
+        int w = getWidthExpansion();
         Rectangle expandedRectangle = new Rectangle(rectangle);
         expandedRectangle.grow(w, 0);
         return expandedRectangle;
     }
 
+    /**
+     * Same as testing if both {@link #getWidthExpandedRectangle()} intersect, without creating them.
+     */
+    public boolean widthExpandedIntersects(TextZone textZone) {
+        int w1 = getWidthExpansion();
+        int w2 = textZone.getWidthExpansion();
+        return GeometryUtils.intersects(
+                getX1() - w1, getY1(), getWidth() + 2 * w1, getHeight(),
+                textZone.getX1() - w2, textZone.getY1(), textZone.getWidth() + 2 * w2, textZone.getHeight());
+    }
+
+    private int getWidthExpansion() {
+        return (int) (getWidth() * 0.2); // e.g. 0.10 means 10% on each side
+    }
+
     public int getArea() {
         return rectangle.width * rectangle.height;
     }
@@ -146,11 +156,13 @@ public abstract class TextZone {
      * The text zone is considered included in this one if {@code percentInside} is inside
      */
     private boolean isPartiallyIncluded(Rectangle rectangle, double percentInside) {
-        Rectangle intersection = GeometryUtils.intersection(this.rectangle, rectangle);
-        if (intersection == null) {
+        // same as GeometryUtils.intersection, without allocating the intersection
+        int intersectionWidth = Math.min(this.rectangle.x + this.rectangle.width, rectangle.x + rectangle.width) - Math.max(this.rectangle.x, rectangle.x);
+        int intersectionHeight = Math.min(this.rectangle.y + this.rectangle.height, rectangle.y + rectangle.height) - Math.max(this.rectangle.y, rectangle.y);
+        if (intersectionWidth <= 0 || intersectionHeight <= 0) {
             return false;
         }
-        double areaIntersection = intersection.width * intersection.height;
+        double areaIntersection = intersectionWidth * intersectionHeight;
         double myArea = this.rectangle.width * this.rectangle.height;
         return (areaIntersection / myArea) >= percentInside;
     }
@@ -169,6 +181,13 @@ public abstract class TextZone {
 
     public void mergeWith(TextZone textZone) {
         this.rectangle = GeometryUtils.mergeBlocks(asList(this, textZone));
+        resetCaches();
+    }
+
+    /**
+     * Called when the rectangle or the page changes, for the values derived from them to be computed again.
+     */
+    protected void resetCaches() {
     }
 
     public BufferedImage extractSubImageFromPage() {
@@ -181,18 +200,32 @@ public abstract class TextZone {
     }
 
     Rectangle getControlRectangle(Side side) {
+        return getControlRectangle(side, new Rectangle());
+    }
+
+    /**
+     * Same as {@link #getControlRectangle(Side)}, set in the given rectangle instead of a new one.
+     *
+     * @return result
+     */
+    Rectangle getControlRectangle(Side side, Rectangle result) {
         switch (side) {
             case LEFT:
-                return new Rectangle(0, getY1(), getX1(), getHeight());
+                result.setBounds(0, getY1(), getX1(), getHeight());
+                break;
             case TOP:
-                return new Rectangle(getX1(), 0, getWidth(), getY1());
+                result.setBounds(getX1(), 0, getWidth(), getY1());
+                break;
             case RIGHT:
-                return new Rectangle(getX2(), getY1(), getPage().getWidth() - getX2(), getHeight());
+                result.setBounds(getX2(), getY1(), getPage().getWidth() - getX2(), getHeight());
+                break;
             case BOTTOM:
-                return new Rectangle(getX1(), getY2(), getWidth(), getPage().getHeight() - getY2());
+                result.setBounds(getX1(), getY2(), getWidth(), getPage().getHeight() - getY2());
+                break;
             default:
                 throw new IllegalArgumentException();
         }
+        return result;
     }
 
     private int getMinYCutSpacing() {
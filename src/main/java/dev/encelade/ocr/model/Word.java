@@ -22,6 +22,25 @@ public class Word extends TextZone {
         super(rectangle, page);
     }
 
+    /**
+     * @return a copy of this word, moved horizontally by dx, on another page
+     */
+    Word translate(int dx, Page page) {
+        Rectangle rectangle = new Rectangle(getRectangle());
+        rectangle.translate(dx, 0);
+        return copy(rectangle, page);
+    }
+
+    /**
+     * @return a word with the same text and confidence, at another position
+     */
+    public Word copy(Rectangle rectangle, Page page) {
+        Word word = new Word(rectangle, page);
+        word.setText(text);
+        word.setConfidence(confidence);
+        return word;
+    }
+
     @Override
     public boolean isValid() {
         if (!text.matches("^[a-zA-Z0-9]*$") && confidence <= 0.5) {
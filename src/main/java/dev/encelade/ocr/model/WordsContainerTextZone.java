@@ -1,44 +1,71 @@
 package dev.encelade.ocr.model;
 
 import java.awt.*;
-import java.util.HashMap;
+import java.awt.geom.Rectangle2D;
+import java.util.EnumMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 
+import static java.util.Collections.unmodifiableList;
+import static java.util.Collections.unmodifiableMap;
 import static java.util.Comparator.comparingInt;
 import static java.util.stream.Collectors.toList;
 import static org.apache.commons.collections4.CollectionUtils.isNotEmpty;
 
+/**
+ * The included words and the values derived from them are computed once, until the rectangle of the zone changes.
+ */
 public abstract class /**/WordsContainerTextZone extends TextZone {
 
-    private Map<Side, List<Word>> wordsOnSidesBorders;
+    private List<Word> includedWords;
+    private final Map<Side, List<Word>> wordsOnSidesBorders = new EnumMap<>(Side.class);
+    private int maxWordHeight = -1;
 
     public WordsContainerTextZone(Rectangle rectangle, Page page) {
         super(rectangle, page);
     }
 
     public List<Word> getIncludedWords() {
-        return getPage().getWords()
+        if (includedWords == null) {
+            includedWords = unmodifiableList(getIncludedWordsNear(getRectangle()));
+        }
+        return includedWords;
+    }
+
+    @Override
+    protected void resetCaches() {
+        includedWords = null;
+        wordsOnSidesBorders.clear();
+        maxWordHeight = -1;
+    }
+
+    /**
+     * Included words that are close to the area, see {@link Page#getWordsNear(Rectangle2D)}.
+     */
+    List<Word> getIncludedWordsNear(Rectangle2D area) {
+        return getPage().getWordsNear(area)
                 .stream()
                 .filter(word -> word.isMostlyIncludedIn(this))
                 .collect(toList());
     }
 
-    // TODO: call wordsOnSidesBorders [?]
     List<Word> getWordsOnTheSideBorder(Side side) {
-        return getIncludedWords()
-                .stream()
-                .filter(word -> isOnTheSide(side, word))
-                .peek(word -> word.mark(side.getColor()))
-                .collect(toList());
+        return wordsOnSidesBorders.computeIfAbsent(side, key -> {
+            Rectangle zoneToControl = new Rectangle();
+            return unmodifiableList(getIncludedWords()
+                    .stream()
+                    .filter(word -> isOnTheSide(key, word, zoneToControl))
+                    .peek(word -> word.mark(key.getColor()))
+                    .collect(toList()));
+        });
     }
 
     // TODO: call wordsOnSidesBorders [?]
     List<Word> getWordsOnTheSideOf(TextZone textZone, Side side) {
         Rectangle sameLine = textZone.getControlRectangle(side);
 
-        return getIncludedWords()
+        return getIncludedWordsNear(sameLine)
                 .stream()
                 .filter(word -> word.intersects(sameLine))
                 .collect(toList());
@@ -46,14 +73,14 @@ public abstract class /**/WordsContainerTextZone extends TextZone {
 
     /**
      * Words that don't have other word on their left side are on considered to be the left side border.
+     *
+     * @param zoneToControl rectangle reused between the calls, to set the control rectangle of the word in
      */
-    private boolean isOnTheSide(Side side, Word wordToTest) {
-        Rectangle zoneToControl = wordToTest.getControlRectangle(side);
+    private boolean isOnTheSide(Side side, Word wordToTest, Rectangle zoneToControl) {
+        wordToTest.getControlRectangle(side, zoneToControl);
 
-        return getIncludedWords()
-                .stream()
-                .filter(word -> !Objects.equals(wordToTest, word))
-                .noneMatch(otherWord -> otherWord.intersects(zoneToControl));
+        return !getPage().hasWordIntersecting(zoneToControl,
+                otherWord -> !Objects.equals(wordToTest, otherWord) && otherWord.isMostlyIncludedIn(this));
     }
 
     public int countLines() {
@@ -61,14 +88,11 @@ public abstract class /**/WordsContainerTextZone extends TextZone {
     }
 
     public Map<Side, List<Word>> getWordsOnSideBorders() {
-        if (wordsOnSidesBorders == null) {
-            wordsOnSidesBorders = new HashMap<>();
-            for (Side side : Side.values()) {
-                wordsOnSidesBorders.put(side, getWordsOnTheSideBorder(side));
-            }
+        for (Side side : Side.values()) {
+            getWordsOnTheSideBorder(side);
         }
 
-        return wordsOnSidesBorders;
+        return unmodifiableMap(wordsOnSidesBorders);
     }
 
     public String getText() {
@@ -88,16 +112,23 @@ public abstract class /**/WordsContainerTextZone extends TextZone {
         return getVerticallyExpandedRectangle(percent, +1);
     }
 
-    private Rectangle getVerticallyExpandedRectangle(double percent, int side) {
-        List<Word> includedWords = getIncludedWords();
-
-        int deltaHeight;
-        if (isNotEmpty(includedWords)) {
-            deltaHeight = includedWords.stream().max(comparingInt(Word::getHeight)).get().getHeight();
-        } else {
-            deltaHeight = getHeight();
+    /**
+     * @return the height of the highest included word, or the height of the zone if there is none
+     */
+    private int getMaxWordHeight() {
+        if (maxWordHeight < 0) {
+            List<Word> includedWords = getIncludedWords();
+            if (isNotEmpty(includedWords)) {
+                maxWordHeight = includedWords.stream().max(comparingInt(Word::getHeight)).get().getHeight();
+            } else {
+                maxWordHeight = getHeight();
+            }
         }
-        deltaHeight = (int) (deltaHeight * percent);
+        return maxWordHeight;
+    }
+
+    private Rectangle getVerticallyExpandedRectangle(double percent, int side) {
+        int deltaHeight = (int) (getMaxWordHeight() * percent);
 
 //        double h = (int) ((getHeight() * percent) / 2);
 //        int x = getRectangle().x;
@@ -0,0 +1,64 @@
+package dev.encelade.ocr.model;
+
+import dev.encelade.utils.GeometryUtils;
+
+import java.awt.*;
+import java.awt.geom.Rectangle2D;
+import java.util.List;
+import java.util.stream.DoubleStream;
+import java.util.stream.IntStream;
+
+/**
+ * Boxes and confidences of the words of a page in parallel arrays, in the order of the words, so that the algorithms
+ * going through many words read primitive values instead of dereferencing each word and its rectangle.
+ */
+class WordsGeometry {
+
+    final int[] x;
+    final int[] y;
+    final int[] width;
+    final int[] height;
+    final float[] confidence;
+
+    WordsGeometry(List<Word> words) {
+        int n = words.size();
+        x = new int[n];
+        y = new int[n];
+        width = new int[n];
+        height = new int[n];
+        confidence = new float[n];
+
+        for (int i = 0; i < n; i++) {
+            Word word = words.get(i);
+            Rectangle rectangle = word.getRectangle();
+            x[i] = rectangle.x;
+            y[i] = rectangle.y;
+            width[i] = rectangle.width;
+            height[i] = rectangle.height;
+            confidence[i] = word.getConfidence();
+        }
+    }
+
+    int size() {
+        return x.length;
+    }
+
+    /**
+     * If the box of the i-th word overlaps or touches the area.
+     */
+    boolean touches(int i, Rectangle2D area) {
+        return x[i] <= area.getMaxX() && x[i] + width[i] >= area.getMinX()
+                && y[i] <= area.getMaxY() && y[i] + height[i] >= area.getMinY();
+    }
+
+    /**
+     * Same as {@link Rectangle#intersects(Rectangle)}, for the box of the i-th word.
+     */
+    boolean intersects(int i, Rectangle rectangle) {
+        return GeometryUtils.intersects(x[i], y[i], width[i], height[i], rectangle.x, rectangle.y, rectangle.width, rectangle.height);
+    }
+
+    DoubleStream confidences() {
+        return IntStream.range(0, size()).mapToDouble(i -> confidence[i]);
+    }
+}
@@ -0,0 +1,113 @@
+package dev.encelade.ocr.model;
+
+import java.awt.*;
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.function.IntConsumer;
+import java.util.function.Predicate;
+
+/**
+ * Uniform grid over the words of a page, to only test the words close to an area instead of all the words of the page.
+ * <br>The cells are about the size of a few words, each word being registered in all the cells it covers.
+ */
+class WordsIndex {
+
+    private static final int MIN_CELL_SIZE = 16;
+
+    // on average, a cell covers the area of about that many words
+    private static final int WORDS_PER_CELL = 4;
+
+    private final List<Word> words;
+    private final WordsGeometry geometry;
+    private final int cellSize;
+    private final int columns;
+    private final int rows;
+    private final int[][] cells;
+
+    WordsIndex(List<Word> words, WordsGeometry geometry, int width, int height) {
+        this.words = words;
+        this.geometry = geometry;
+        this.cellSize = Math.max(MIN_CELL_SIZE, (int) Math.sqrt(WORDS_PER_CELL * (double) width * height / Math.max(1, words.size())));
+        this.columns = Math.max(1, (width + cellSize - 1) / cellSize);
+        this.rows = Math.max(1, (height + cellSize - 1) / cellSize);
+
+        int[] cellsSize = new int[columns * rows];
+        for (int i = 0; i < words.size(); i++) {
+            forEachCell(geometry.x[i], geometry.y[i], geometry.x[i] + geometry.width[i], geometry.y[i] + geometry.height[i], cell -> cellsSize[cell]++);
+        }
+
+        cells = new int[columns * rows][];
+        for (int cell = 0; cell < cells.length; cell++) {
+            cells[cell] = new int[cellsSize[cell]];
+            cellsSize[cell] = 0;
+        }
+
+        for (int i = 0; i < words.size(); i++) {
+            final int wordIdx = i;
+            forEachCell(geometry.x[i], geometry.y[i], geometry.x[i] + geometry.width[i], geometry.y[i] + geometry.height[i], cell -> cells[cell][cellsSize[cell]++] = wordIdx);
+        }
+    }
+
+    /**
+     * @return the words whose rectangle overlaps or touches the area, in the order of the words of the page. It
+     * contains all the words that may intersect any shape within the area.
+     */
+    List<Word> getWordsNear(Rectangle2D area) {
+        BitSet candidates = new BitSet(words.size());
+        forEachCell(area.getMinX(), area.getMinY(), area.getMaxX(), area.getMaxY(), cell -> {
+            for (int wordIdx : cells[cell]) {
+                candidates.set(wordIdx);
+            }
+        });
+
+        List<Word> result = new ArrayList<>();
+        for (int i = candidates.nextSetBit(0); i >= 0; i = candidates.nextSetBit(i + 1)) {
+            if (geometry.touches(i, area)) {
+                result.add(words.get(i));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * If a word accepted by the filter intersects the rectangle (as {@link Rectangle#intersects(Rectangle)}).
+     * <br>The boxes are read from the geometry and no list is created: the filter only gets the words intersecting the
+     * rectangle, possibly several times.
+     */
+    boolean hasWordIntersecting(Rectangle rectangle, Predicate<Word> filter) {
+        int column1 = clamp(Math.floorDiv(rectangle.x, cellSize), columns);
+        int column2 = clamp(Math.floorDiv(rectangle.x + rectangle.width, cellSize), columns);
+        int row1 = clamp(Math.floorDiv(rectangle.y, cellSize), rows);
+        int row2 = clamp(Math.floorDiv(rectangle.y + rectangle.height, cellSize), rows);
+
+        for (int row = row1; row <= row2; row++) {
+            for (int column = column1; column <= column2; column++) {
+                for (int wordIdx : cells[row * columns + column]) {
+                    if (geometry.intersects(wordIdx, rectangle) && filter.test(words.get(wordIdx))) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    private void forEachCell(double minX, double minY, double maxX, double maxY, IntConsumer consumer) {
+        int column1 = clamp((int) Math.floor(minX / cellSize), columns);
+        int column2 = clamp((int) Math.floor(maxX / cellSize), columns);
+        int row1 = clamp((int) Math.floor(minY / cellSize), rows);
+        int row2 = clamp((int) Math.floor(maxY / cellSize), rows);
+
+        for (int row = row1; row <= row2; row++) {
+            for (int column = column1; column <= column2; column++) {
+                consumer.accept(row * columns + column);
+            }
+        }
+    }
+
+    private static int clamp(int value, int size) {
+        return Math.max(0, Math.min(size - 1, value));
+    }
+}
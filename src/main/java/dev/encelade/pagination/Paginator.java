@@ -6,8 +6,10 @@ import dev.encelade.processing.RequestConfig;
 import dev.encelade.ocr.model.TextZone;
 import dev.encelade.ocr.model.WhiteSpace;
 import dev.encelade.utils.Counter;
+import dev.encelade.utils.GrayResampler;
 import dev.encelade.utils.ImageUtils;
 import lombok.Getter;
+import org.apache.commons.lang3.tuple.ImmutablePair;
 
 import javax.imageio.ImageIO;
 import java.awt.*;
@@ -18,6 +20,7 @@ import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.List;
 import java.util.Objects;
+import java.util.function.Consumer;
 import java.util.logging.Logger;
 
 import static java.awt.Color.BLUE;
@@ -49,7 +52,7 @@ public class Paginator {
     private final int pageTopBottomMargin;
     private final int pageLeftRightMargin;
 
-    private final List<Page> pages;
+    private List<Page> pages;
     private final RequestConfig requestConfig;
 
     private List<TextZone> elementsForPagination;
@@ -57,11 +60,18 @@ public class Paginator {
     @Getter
     private List<byte[]> outputImages;
 
+    private final Consumer<BufferedImage> outputImagesConsumer;
+
     private int yOffset;
     private BufferedImage renderBuffer;
     private Graphics2D graphics2D;
 
     private float ratio = 1;
+    private boolean ratioComputed = false;
+
+    // streaming: the first pages and their elements, kept until there are enough of them to compute the ratio
+    private final int ratioWindowSize;
+    private final List<ImmutablePair<Page, List<TextZone>>> pendingElements = new ArrayList<>();
 
     private Counter counter;
 
@@ -83,9 +93,27 @@ public class Paginator {
     };
 
     public Paginator(List<Page> pages, RequestConfig requestConfig) {
+        this(requestConfig, null, 0);
         this.pages = pages;
-        this.requestConfig = requestConfig;
         this.pages.sort(PAGE_COMPARATOR);
+    }
+
+    /**
+     * Streaming pagination: pages are given one by one and in order to {@link #paginate(Page)}, and each output page
+     * is handed to {@code outputImagesConsumer} as soon as it is full.
+     * <br>The ratio is computed on the first {@code ratioWindowSize} pages. A paragraph of a following page that
+     * doesn't fit with that ratio is scaled down on its own.
+     */
+    public Paginator(RequestConfig requestConfig, Consumer<BufferedImage> outputImagesConsumer, int ratioWindowSize) {
+        this.requestConfig = requestConfig;
+        this.ratioWindowSize = ratioWindowSize;
+
+        if (outputImagesConsumer == null) {
+            this.outputImages = new ArrayList<>();
+            this.outputImagesConsumer = image -> outputImages.add(encode(image, requestConfig));
+        } else {
+            this.outputImagesConsumer = outputImagesConsumer;
+        }
 
         renderWidth = (int) (1080 * 0.75 * getQuality());
         renderHeight = (int) (1440 * 0.75 * getQuality());
@@ -129,28 +157,83 @@ public class Paginator {
         @Override
         public void run() {
             extractElementsToRender();
-            breakDownElementsToRender();
+            elementsForPagination = breakDownElementsToRender(elementsForPagination);
             ratio = computeRatio(elementsForPagination);
+            ratioComputed = true;
             counter = new Counter();
 
             reInitBuffer();
-            outputImages = new ArrayList<>();
-            Page lastPage = elementsForPagination.get(0).getPage();
-            for (TextZone textZone : elementsForPagination) {
-                if (textZone instanceof Paragraph) {
-                    if (exceedsBuffer(textZone)) {
-                        flushBuffer();
-                    }
+            paginateElements(elementsForPagination);
+            flushBuffer();
+        }
+    }
+
+    /**
+     * Streaming only: paginate the next page.
+     */
+    public void paginate(Page page) {
+        List<TextZone> elements = breakDownElementsToRender(page.getElementsForPagination());
 
-                    addParagraphToBuffer((Paragraph) textZone);
-                } else if (textZone instanceof WhiteSpace) {
-                    yOffset += min(textZone.getHeight(), maxWhiteSpaceHeight);
+        if (ratioComputed) {
+            paginateElements(elements);
+            page.deleteImageData();
+        } else {
+            pendingElements.add(new ImmutablePair<>(page, elements));
+            if (pendingElements.size() >= ratioWindowSize) {
+                paginatePendingElements();
+            }
+        }
+    }
+
+    /**
+     * Streaming only: to be called after the last page, flushes the last output page.
+     */
+    public void finish() {
+        if (!ratioComputed) {
+            paginatePendingElements();
+        }
+
+        flushBuffer();
+    }
+
+    private void paginatePendingElements() {
+        List<TextZone> allElements = pendingElements
+                .stream()
+                .flatMap(pending -> pending.getRight().stream())
+                .collect(toList());
+
+        ratio = computeRatio(allElements);
+        ratioComputed = true;
+        reInitBuffer();
+
+        // pages without any element are released as well
+        for (ImmutablePair<Page, List<TextZone>> pending : pendingElements) {
+            paginateElements(pending.getRight());
+            pending.getLeft().deleteImageData();
+        }
+        pendingElements.clear();
+    }
+
+    private void paginateElements(List<TextZone> elements) {
+        if (elements.isEmpty()) {
+            return;
+        }
+
+        Page lastPage = elements.get(0).getPage();
+        for (TextZone textZone : elements) {
+            if (textZone instanceof Paragraph) {
+                if (exceedsBuffer(textZone)) {
+                    flushBuffer();
                 }
+
+                addParagraphToBuffer((Paragraph) textZone, elements);
+            } else if (textZone instanceof WhiteSpace) {
+                yOffset += min(textZone.getHeight(), maxWhiteSpaceHeight);
+            }
+            if (counter != null) {
                 counter.increment();
-                lastPage = updateLastPage(lastPage, textZone.getPage());
             }
-
-            flushBuffer();
+            lastPage = updateLastPage(lastPage, textZone.getPage());
         }
     }
 
@@ -165,41 +248,58 @@ public class Paginator {
     }
 
     private boolean exceedsBuffer(TextZone textZone) {
-        return yOffset + (textZone.getHeight() * ratio) > (renderHeight - pageTopBottomMargin)
+        return yOffset + (textZone.getHeight() * getRatio(textZone)) > (renderHeight - pageTopBottomMargin)
                 && textZone instanceof Paragraph;
     }
 
-    private void addParagraphToBuffer(Paragraph paragraph) {
+    /**
+     * Same as {@link #ratio}, unless the paragraph doesn't fit with it (which can only happen in streaming mode).
+     */
+    private float getRatio(TextZone textZone) {
+        return min(ratio, getFitRatio(textZone));
+    }
+
+    private void addParagraphToBuffer(Paragraph paragraph, List<TextZone> elements) {
+        float paragraphRatio = getRatio(paragraph);
+
         paragraph.getPage().enableImageCache();
         BufferedImage subImage = paragraph.extractSubImageFromPage();
-        if (ratio != 1) {
-            subImage = ImageUtils.resize(subImage, ratio, BUFFERED_IMAGE_TYPE);
-        }
-
-        float compressionRate = getQuality();
-        if (compressionRate < 1f) {
-            subImage = ImageUtils.compress(subImage, compressionRate);
-        }
+        int newWidth = (int) (paragraphRatio * subImage.getWidth());
+        int newHeight = (int) (paragraphRatio * subImage.getHeight());
 
         float xOffset = 0;
-        xOffset += ratio * (paragraph.getX1() - paragraph.getPage().computeParagraphXOffSet()); // original X1
-        xOffset += getLeftMargin(paragraph); // new margins
-        graphics2D.drawImage(subImage, (int) xOffset, yOffset, null);
+        xOffset += paragraphRatio * (paragraph.getX1() - paragraph.getPage().computeParagraphXOffSet()); // original X1
+        xOffset += getLeftMargin(paragraph, elements); // new margins
+
+        // with lossless compositing, the quality is only applied when encoding the output page
+        float compressionRate = isLosslessCompositing() ? 1f : getQuality();
+        if (paragraphRatio != 1 && compressionRate >= 1f) {
+            // resized directly in the buffer
+            GrayResampler.resizeInto(subImage, renderBuffer, (int) xOffset, yOffset, newWidth, newHeight);
+        } else {
+            if (paragraphRatio != 1) {
+                subImage = ImageUtils.resize(subImage, newWidth, newHeight, BUFFERED_IMAGE_TYPE);
+            }
+            if (compressionRate < 1f) {
+                subImage = ImageUtils.compress(subImage, compressionRate);
+            }
+            graphics2D.drawImage(subImage, (int) xOffset, yOffset, null);
+        }
 
         if (DRAW_DEBUG_RECTANGLES_AROUND_ELEMENTS) {
             graphics2D.setColor(BLUE);
-            graphics2D.drawRect((int) xOffset, yOffset, subImage.getWidth(), subImage.getHeight());
+            graphics2D.drawRect((int) xOffset, yOffset, newWidth, newHeight);
         }
-        yOffset += paragraph.getHeight() * ratio;
+        yOffset += paragraph.getHeight() * paragraphRatio;
     }
 
     // FIXME: unclear
-    private int getLeftMargin(Paragraph paragraph) {
+    private int getLeftMargin(Paragraph paragraph, List<TextZone> elements) {
         int margin = Integer.MAX_VALUE;
-        for (TextZone textZone : elementsForPagination) {
+        for (TextZone textZone : elements) {
             if (textZone instanceof Paragraph) {
                 if (Objects.equals(textZone.getPage(), paragraph.getPage())) {
-                    int blockMargin = (int) (renderWidth - (textZone.getX2() - textZone.getPage().computeParagraphXOffSet()) * ratio);
+                    int blockMargin = (int) (renderWidth - (textZone.getX2() - textZone.getPage().computeParagraphXOffSet()) * getRatio(textZone));
                     if (blockMargin < margin) {
                         margin = blockMargin;
                     }
@@ -223,35 +323,35 @@ public class Paginator {
     }
 
     private void flushBuffer() {
-        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+        outputImagesConsumer.accept(renderBuffer);
+        reInitBuffer();
+    }
+
+    /**
+     * With {@link RequestConfig#isLosslessCompositing() lossless compositing}, the quality of the request is always the
+     * JPEG quality of the output page (up to 1). Otherwise, the default JPEG quality of ImageIO is used.
+     */
+    public static byte[] encode(BufferedImage outputImage, RequestConfig requestConfig) {
         try {
-            ImageIO.write(renderBuffer, "jpg", byteArrayOutputStream);
+            if (requestConfig != null && requestConfig.isLosslessCompositing()) {
+                return ImageUtils.encode(outputImage, requestConfig.getQuality());
+            }
+
+            ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+            ImageIO.write(outputImage, "jpg", byteArrayOutputStream);
+            return byteArrayOutputStream.toByteArray();
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
-        outputImages.add(byteArrayOutputStream.toByteArray());
-        reInitBuffer();
     }
 
     private float computeRatio(List<TextZone> textZones) {
         float reduceRatio = 1;
         float increaseRatio = Integer.MAX_VALUE;
 
-        float widthToFitIn = renderWidth - 2 * pageLeftRightMargin;
-        float heightToFitIn = renderHeight - 2 * pageTopBottomMargin;
-
         for (TextZone textZone : textZones) {
             if (textZone instanceof Paragraph) {
-                int widthToBeFitted = textZone.getWidth();
-                int heightToBeFitted = textZone.getHeight();
-
-                float widthRatio = widthToFitIn / widthToBeFitted;
-                float heightRatio = heightToFitIn / heightToBeFitted;
-
-                assert widthRatio > 0;
-                assert heightRatio > 0;
-
-                float textZoneRatio = min(widthRatio, heightRatio);
+                float textZoneRatio = getFitRatio(textZone);
 
                 if (textZoneRatio < reduceRatio) {
                     reduceRatio = textZoneRatio;
@@ -278,7 +378,20 @@ public class Paginator {
         return ratio;
     }
 
-    private void breakDownElementsToRender() {
+    private float getFitRatio(TextZone textZone) {
+        float widthToFitIn = renderWidth - 2 * pageLeftRightMargin;
+        float heightToFitIn = renderHeight - 2 * pageTopBottomMargin;
+
+        float widthRatio = widthToFitIn / textZone.getWidth();
+        float heightRatio = heightToFitIn / textZone.getHeight();
+
+        assert widthRatio > 0;
+        assert heightRatio > 0;
+
+        return min(widthRatio, heightRatio);
+    }
+
+    private List<TextZone> breakDownElementsToRender(List<TextZone> elementsForPagination) {
         List<TextZone> result = elementsForPagination
                 .stream()
                 .flatMap(textZone -> {
@@ -299,10 +412,12 @@ public class Paginator {
         logger.info("new elements: " + result.size());
 
         // TODO: figure out why there are so many margins on the side (there should be none, right?)
-        TextZone textZone = result.stream().filter(el -> el instanceof Paragraph).max(comparing(TextZone::getHeight)).get();
-        logger.info("biggest textZone: " + textZone);
+        result.stream()
+                .filter(el -> el instanceof Paragraph)
+                .max(comparing(TextZone::getHeight))
+                .ifPresent(textZone -> logger.info("biggest textZone: " + textZone));
 
-        this.elementsForPagination = result;
+        return result;
     }
 
     private void extractElementsToRender() {
@@ -312,6 +427,10 @@ public class Paginator {
                 .collect(toList());
     }
 
+    private boolean isLosslessCompositing() {
+        return requestConfig != null && requestConfig.isLosslessCompositing();
+    }
+
     private float getQuality() {
         return requestConfig == null ? 1f : requestConfig.getQuality();
     }
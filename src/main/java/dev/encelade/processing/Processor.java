@@ -3,27 +3,37 @@ package dev.encelade.processing;
 import dev.encelade.ocr.OCR;
 import dev.encelade.ocr.model.Page;
 import dev.encelade.pagination.Paginator;
+import dev.encelade.processing.corrections.SkewEstimator;
 import dev.encelade.utils.Counter;
+import dev.encelade.utils.pdf.ImagesPDFWriter;
+import dev.encelade.utils.pdf.PDFDocumentSession;
 import dev.encelade.utils.pdf.PDFUtils;
+import dev.encelade.utils.raster.RasterStoreFactory;
 import com.itextpdf.text.DocumentException;
 import lombok.Getter;
 
 import java.awt.image.BufferedImage;
 import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.nio.file.Files;
 import java.util.List;
 import java.util.logging.Logger;
-import java.util.stream.Stream;
 
 import static dev.encelade.utils.pdf.PDFUtils.*;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.util.Collections.singletonList;
 import static java.util.stream.Collectors.toList;
-import static java.util.stream.Stream.of;
 import static org.apache.commons.io.FileUtils.writeByteArrayToFile;
 import static org.apache.commons.lang3.StringUtils.leftPad;
 
-public class Processor {
+/**
+ * Releases what it holds (the loaded document, temporary files) at the end of the processing, or when closed if
+ * {@link #process()} is never called.
+ */
+public class Processor implements Closeable {
 
     private final static Logger logger = Logger.getLogger(Processor.class.getName());
 
@@ -32,8 +42,13 @@ public class Processor {
     @Getter
     private final RequestConfig requestConfig;
 
+    private final PDFDocumentSession documentSession;
+    private RasterStoreFactory rasterStoreFactory;
+
     private List<Page> pages;
     private List<byte[]> outputImages;
+    // in streaming mode, the output pages are written to this file as they are produced
+    private File streamedOutputFile;
     private Thread thread;
     private Paginator paginator;
 
@@ -47,7 +62,14 @@ public class Processor {
 
     public Processor(RequestConfig requestConfig) {
         this.requestConfig = requestConfig;
-        int effectiveMaxPage = getEffectiveMaxPage(requestConfig);
+        this.documentSession = new PDFDocumentSession(requestConfig);
+        int effectiveMaxPage;
+        try {
+            effectiveMaxPage = getEffectiveMaxPage(requestConfig, documentSession.getNumberOfPages());
+        } catch (RuntimeException e) {
+            documentSession.close();
+            throw e;
+        }
         this.numberOfPagesToProcess = effectiveMaxPage - requestConfig.getMinPage() + 1;
         requestConfig.setMaxPage(effectiveMaxPage);
         logger.info("number of pages to process: " + numberOfPagesToProcess);
@@ -64,7 +86,7 @@ public class Processor {
     }
 
     public int getNumberOfPagesToProcess() {
-        return pages.size();
+        return numberOfPagesToProcess;
     }
 
     public float getProgress() {
@@ -119,49 +141,118 @@ public class Processor {
         public void run() {
             status = ProcessorStatus.ANALYZING;
             processedPages = new Counter();
+            rasterStoreFactory = requestConfig.getRasterStoreType().createFactory(requestConfig.getScratchDirectory());
 
-            pages = getImagesMapAsStream(requestConfig)
-                    .map(pair -> {
-                        processedPages.increment(PROGRESS_STEP);
-                        BufferedImage image = pair.getValue();
-                        int idx = pair.getKey();
-                        Page page = new OCR().analyze(image, idx);
-                        processedPages.increment(PROGRESS_STEP);
-                        return page;
-                    })
-                    .flatMap(page -> {
-                        boolean isTwoPagesLayout = page.detectTwoPagesLayout();
-                        Stream<Page> result = isTwoPagesLayout ? page.splitForLayout().stream() : of(page);
-                        processedPages.increment(PROGRESS_STEP);
-                        return result;
-                    })
-                    .peek(Page::detectTextBlocks)
-                    .map(page -> {
-                        if (requestConfig.isCorrectAngle()) {
-                            page.detectCorrectiveAngle();
-                            return page.correctAngle();
-                        }
+            try {
+                if (requestConfig.isStreaming()) {
+                    runStreaming();
+                } else {
+                    runBatch();
+                }
+            } finally {
+                rasterStoreFactory.close();
+            }
 
-                        processedPages.increment(PROGRESS_STEP / (float) page.getSplitIn());
-                        return page;
-                    })
-                    .peek(page -> {
-                        page.detectParagraphs();
-                        processedPages.increment(PROGRESS_STEP / (float) page.getSplitIn());
-                    })
-                    .collect(toList());
+            status = ProcessorStatus.FINISHED;
+
+            if (PRINT_OUTPUT) {
+                printOutput();
+            }
+        }
+
+        private void runBatch() {
+            try {
+                pages = documentSession
+                        .getImagesMapAsStream()
+                        .flatMap(pair -> analyzePage(pair.getKey(), pair.getValue()).stream())
+                        .collect(toList());
+            } finally {
+                documentSession.close();
+            }
 
             status = ProcessorStatus.RENDERING;
             paginator = new Paginator(pages, requestConfig);
             paginator.process();
             paginator.joinThread();
             outputImages = paginator.getOutputImages();
-            status = ProcessorStatus.FINISHED;
+        }
 
-            if (PRINT_OUTPUT) {
-                printOutput();
+        private void runStreaming() {
+            try {
+                streamedOutputFile = File.createTempFile("output", ".pdf", requestConfig.getScratchDirectory());
+                streamedOutputFile.deleteOnExit();
+                try (ImagesPDFWriter outputWriter = new ImagesPDFWriter(new FileOutputStream(streamedOutputFile), requestConfig.getQuality())) {
+                    StreamingPipeline pipeline = new StreamingPipeline(requestConfig, documentSession, this::analyzePage, outputWriter);
+                    paginator = pipeline.getPaginator();
+                    pipeline.run();
+                }
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            } finally {
+                documentSession.close();
             }
         }
+
+        /**
+         * OCR (or text layer extraction), layout, angle correction and paragraphs detection of one page of the document.
+         */
+        private List<Page> analyzePage(int idx, BufferedImage image) {
+            processedPages.increment(PROGRESS_STEP);
+            Page page = null;
+            if (requestConfig.isUseTextLayer()) {
+                page = documentSession.extractTextLayer(idx, image, rasterStoreFactory);
+            }
+            if (page == null) {
+                double correctiveAngle = 0;
+                if (requestConfig.isPreOcrDeskew()) {
+                    SkewEstimator skewEstimator = new SkewEstimator();
+                    correctiveAngle = skewEstimator.estimateCorrectiveAngle(image);
+                    image = skewEstimator.deskew(image, correctiveAngle);
+                }
+                page = new OCR(rasterStoreFactory).analyze(image, idx);
+                page.setCorrectedAngleValue(correctiveAngle);
+            }
+            processedPages.increment(PROGRESS_STEP);
+
+            boolean isTwoPagesLayout = page.detectTwoPagesLayout();
+            List<Page> layoutPages = isTwoPagesLayout ? page.splitForLayout(requestConfig.isReuseWordsForLayout()) : singletonList(page);
+            if (isTwoPagesLayout) {
+                page.deleteImageData();
+            }
+            processedPages.increment(PROGRESS_STEP);
+
+            return layoutPages
+                    .stream()
+                    .peek(Page::detectTextBlocks)
+                    .map(layoutPage -> {
+                        if (requestConfig.isCorrectAngle() && !requestConfig.isPreOcrDeskew()) {
+                            layoutPage.detectCorrectiveAngle(requestConfig.isGeometricAngleCorrection());
+                            return layoutPage.correctAngle();
+                        }
+
+                        processedPages.increment(PROGRESS_STEP / (float) layoutPage.getSplitIn());
+                        return layoutPage;
+                    })
+                    .peek(layoutPage -> {
+                        layoutPage.detectParagraphs();
+                        processedPages.increment(PROGRESS_STEP / (float) layoutPage.getSplitIn());
+                    })
+                    .collect(toList());
+        }
+    }
+
+    /**
+     * Only needed if the processing is not run, or to delete the output written in streaming mode once it was read.
+     */
+    @Override
+    public void close() {
+        documentSession.close();
+        if (rasterStoreFactory != null) {
+            rasterStoreFactory.close();
+        }
+        if (streamedOutputFile != null && !streamedOutputFile.delete()) {
+            logger.warning("could not delete " + streamedOutputFile);
+        }
     }
 
     private String getRequestFileName() {
@@ -175,6 +266,11 @@ public class Processor {
 
         try {
             File outputFile = new File(path);
+            if (streamedOutputFile != null) {
+                Files.copy(streamedOutputFile.toPath(), outputFile.toPath(), REPLACE_EXISTING);
+                return outputFile;
+            }
+
             FileOutputStream fileOutputStream = new FileOutputStream(outputFile);
             PDFUtils.imagesToPDF(outputImages, fileOutputStream, requestConfig.getQuality());
             return outputFile;
@@ -189,6 +285,10 @@ public class Processor {
         }
 
         try {
+            if (streamedOutputFile != null) {
+                return Files.readAllBytes(streamedOutputFile.toPath());
+            }
+
             ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
             imagesToPDF(outputImages, byteArrayOutputStream, requestConfig.getQuality());
             return byteArrayOutputStream.toByteArray();
@@ -198,7 +298,7 @@ public class Processor {
     }
 
     private void printOutput() {
-        if (PRINT_OUTPUT) {
+        if (PRINT_OUTPUT && outputImages != null) {
             int i = 0;
             for (byte[] image : outputImages) {
                 String id = leftPad(Integer.toString(i++), 3, '0');
@@ -1,5 +1,6 @@
 package dev.encelade.processing;
 
+import dev.encelade.utils.raster.RasterStoreType;
 import lombok.AccessLevel;
 import lombok.Builder;
 import lombok.Getter;
@@ -26,6 +27,41 @@ public class RequestConfig {
     private boolean correctAngle;
     private float quality;
 
+    // analyze and paginate pages through bounded queues, instead of analyzing the whole document first
+    private boolean streaming;
+    private int streamingQueueSize;
+
+    // heap budget of PDFBox when loading the document, beyond which it uses scratch files (null means heap only); it is
+    // for the whole request, shared between the copies of the document loaded by the workers
+    private Long maxMainMemoryBytes;
+    // also used for the images of the pages when the raster store type is MAPPED
+    private File scratchDirectory;
+
+    // build the words from the text layer of the PDF when it has one, instead of running the OCR
+    private boolean useTextLayer;
+
+    // decode the image of pages that are only one scan at its native resolution, instead of rendering them
+    private boolean extractEmbeddedImages;
+
+    // per page, the lowest resolution keeping the text lines high enough for the OCR (quality gives the maximum)
+    private boolean adaptiveResolution;
+
+    // split two-page layouts by partitioning the words already detected, instead of running the OCR on each half
+    private boolean reuseWordsForLayout;
+
+    // evaluate the corrective angles by rotating the detected words, and only rotate the image of the chosen one
+    private boolean geometricAngleCorrection;
+
+    // straighten the image before the OCR from its projection profile, instead of correcting the angle after it
+    private boolean preOcrDeskew;
+
+    // how the images of the pages are kept between the stages of the processing
+    private RasterStoreType rasterStoreType;
+
+    // composite the paragraphs without compressing them, the quality then only sets the JPEG quality of the output
+    // pages (and their resolution)
+    private boolean losslessCompositing;
+
     @Setter(AccessLevel.NONE)
     private String errorDescription;
 
@@ -34,6 +70,8 @@ public class RequestConfig {
         private int minPage = 1;
         private boolean correctAngle = true;
         private float quality = 1f;
+        private int streamingQueueSize = 4;
+        private RasterStoreType rasterStoreType = RasterStoreType.JPEG;
     }
 
     public boolean isFile() {
@@ -44,6 +82,10 @@ public class RequestConfig {
         return pdfData != null;
     }
 
+    public boolean isDiskBacked() {
+        return maxMainMemoryBytes != null;
+    }
+
     public boolean validate() {
         if (minPage <= 0) {
             errorDescription = "minPage can not be < 0";
@@ -60,6 +102,16 @@ public class RequestConfig {
             return false;
         }
 
+        if (streaming && streamingQueueSize < 1) {
+            errorDescription = "streamingQueueSize must be >= 1";
+            return false;
+        }
+
+        if (maxMainMemoryBytes != null && maxMainMemoryBytes < 0) {
+            errorDescription = "maxMainMemoryBytes can not be < 0";
+            return false;
+        }
+
         if (pdfData == null && pdfFile == null) {
             errorDescription = "No data provided";
             return false;
@@ -0,0 +1,185 @@
+package dev.encelade.processing;
+
+import dev.encelade.ocr.model.Page;
+import dev.encelade.pagination.Paginator;
+import dev.encelade.utils.pdf.ImagesPDFWriter;
+import dev.encelade.utils.pdf.PDFDocumentSession;
+import lombok.Getter;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.BiFunction;
+import java.util.logging.Logger;
+
+import static java.awt.image.BufferedImage.TYPE_BYTE_GRAY;
+import static java.util.Collections.emptyList;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.MINUTES;
+
+/**
+ * Streaming execution of a request: render -> OCR -> layout -> paginate -> encode.
+ * <br>Pages are rendered and analyzed by a pool of workers, at most {@link RequestConfig#getStreamingQueueSize()}
+ * pages ahead of the pagination, and full output pages go through another bounded queue to be encoded and written
+ * to the output PDF right away. The heap used is then bounded by the size of the queues rather than by the length of
+ * the document, and the first output pages are produced while the next ones are still being analyzed.
+ */
+class StreamingPipeline {
+
+    private final static Logger logger = Logger.getLogger(StreamingPipeline.class.getName());
+
+    private static final Future<List<Page>> END_OF_PAGES = CompletableFuture.completedFuture(emptyList());
+    private static final BufferedImage END_OF_OUTPUT_IMAGES = new BufferedImage(1, 1, TYPE_BYTE_GRAY);
+
+    // how often a full encode queue checks that the encode stage is still running
+    private static final long OFFER_TIMEOUT_MILLIS = 500;
+
+    private final RequestConfig requestConfig;
+    private final PDFDocumentSession documentSession;
+    private final BiFunction<Integer, BufferedImage, List<Page>> pageAnalyzer;
+
+    private final BlockingQueue<Future<List<Page>>> analyzedPages;
+    private final BlockingQueue<BufferedImage> outputImagesToEncode;
+    private final ImagesPDFWriter outputWriter;
+
+    private Thread encodeThread;
+    private volatile Throwable encodeError;
+
+    @Getter
+    private final Paginator paginator;
+
+    /**
+     * @param pageAnalyzer from the page index and its image to the analyzed page(s), ready to be paginated
+     * @param outputWriter receives the encoded output pages, in order
+     */
+    StreamingPipeline(RequestConfig requestConfig, PDFDocumentSession documentSession, BiFunction<Integer, BufferedImage, List<Page>> pageAnalyzer, ImagesPDFWriter outputWriter) {
+        this.requestConfig = requestConfig;
+        this.documentSession = documentSession;
+        this.pageAnalyzer = pageAnalyzer;
+        this.outputWriter = outputWriter;
+
+        int queueSize = requestConfig.getStreamingQueueSize();
+        this.analyzedPages = new ArrayBlockingQueue<>(queueSize);
+        this.outputImagesToEncode = new ArrayBlockingQueue<>(queueSize);
+        this.paginator = new Paginator(requestConfig, this::putOutputImage, queueSize);
+    }
+
+    void run() {
+        ExecutorService analysisExecutor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        Thread renderThread = new Thread(() -> submitPages(analysisExecutor), "streaming-render");
+        encodeThread = new Thread(this::encodeOutputImages, "streaming-encode");
+        renderThread.start();
+        encodeThread.start();
+
+        try {
+            paginateAnalyzedPages();
+        } finally {
+            stopAnalysis(renderThread, analysisExecutor);
+            try {
+                putOutputImage(END_OF_OUTPUT_IMAGES);
+            } catch (IllegalStateException e) {
+                // the encode stage already stopped, its error is thrown below
+            }
+        }
+
+        try {
+            encodeThread.join();
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        }
+
+        if (encodeError != null) {
+            throw new RuntimeException(encodeError);
+        }
+    }
+
+    /**
+     * Only returns once no worker uses the document session any more, so it can be closed.
+     */
+    private void stopAnalysis(Thread renderThread, ExecutorService analysisExecutor) {
+        renderThread.interrupt();
+        analysisExecutor.shutdownNow();
+        try {
+            renderThread.join();
+            while (!analysisExecutor.awaitTermination(1, MINUTES)) {
+                logger.warning("waiting for the analysis workers to stop");
+            }
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private void submitPages(ExecutorService analysisExecutor) {
+        try {
+            for (int pageIdx = requestConfig.getMinPage(); pageIdx <= requestConfig.getMaxPage(); pageIdx++) {
+                final int idx = pageIdx;
+                analyzedPages.put(analysisExecutor.submit(() -> analyzePage(idx)));
+            }
+            analyzedPages.put(END_OF_PAGES);
+        } catch (InterruptedException | RejectedExecutionException e) {
+            // the pagination stage stopped
+            logger.warning("render stage interrupted");
+        }
+    }
+
+    private List<Page> analyzePage(int pageIdx) {
+        try {
+            return pageAnalyzer.apply(pageIdx, documentSession.renderPage(pageIdx));
+        } catch (IOException e) {
+            logger.warning(e.toString());
+            return emptyList();
+        }
+    }
+
+    private void paginateAnalyzedPages() {
+        try {
+            Future<List<Page>> next;
+            while ((next = analyzedPages.take()) != END_OF_PAGES) {
+                for (Page page : next.get()) {
+                    paginator.paginate(page);
+                }
+            }
+            paginator.finish();
+        } catch (InterruptedException | ExecutionException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Waits while the queue is full, unless the encode stage stopped (on an error), in which case nothing would ever
+     * take the image.
+     */
+    private void putOutputImage(BufferedImage outputImage) {
+        try {
+            while (!outputImagesToEncode.offer(outputImage, OFFER_TIMEOUT_MILLIS, MILLISECONDS)) {
+                if (!encodeThread.isAlive()) {
+                    throw new IllegalStateException("encode stage stopped", encodeError);
+                }
+            }
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private void encodeOutputImages() {
+        try {
+            BufferedImage outputImage;
+            while ((outputImage = outputImagesToEncode.take()) != END_OF_OUTPUT_IMAGES) {
+                outputWriter.add(Paginator.encode(outputImage, requestConfig));
+            }
+        } catch (InterruptedException e) {
+            logger.warning("encode stage interrupted");
+        } catch (Throwable t) {
+            logger.severe("encode stage failed: " + t);
+            encodeError = t;
+        }
+    }
+}
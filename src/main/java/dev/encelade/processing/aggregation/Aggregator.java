@@ -2,8 +2,11 @@ package dev.encelade.processing.aggregation;
 
 import dev.encelade.ocr.model.TextZone;
 
+import java.awt.*;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
 import java.util.function.BiPredicate;
 import java.util.logging.Logger;
 
@@ -20,6 +23,10 @@ public class Aggregator<T extends TextZone> {
     }
 
     public List<List<T>> buildGroups() {
+        if (belongsToGroupPredicate instanceof SweepablePredicate) {
+            return buildGroups((SweepablePredicate<T>) belongsToGroupPredicate);
+        }
+
         List<List<T>> groups = new ArrayList<>();
 
         for (T objectToGroup : toGroup) {
@@ -40,5 +47,70 @@ public class Aggregator<T extends TextZone> {
                 .findFirst()
                 .orElse(null);
     }
-}
 
+    /**
+     * Same groups as {@link #findGroupBelongsTo(TextZone, List)} (i.e. each element goes to the first group created
+     * that it belongs to), but the rectangles of the group representatives are computed once and sorted by y, so that
+     * only the groups vertically close to an element are tested.
+     */
+    private List<List<T>> buildGroups(SweepablePredicate<T> predicate) {
+        List<List<T>> groups = new ArrayList<>();
+        List<T> representatives = new ArrayList<>();
+        List<Rectangle> representativeRectangles = new ArrayList<>();
+
+        // y of the representative rectangles -> indexes of the groups
+        TreeMap<Integer, List<Integer>> groupsByY = new TreeMap<>();
+        int maxRepresentativeHeight = 0;
+
+        for (T objectToGroup : toGroup) {
+            Rectangle elementRectangle = predicate.getElementRectangle(objectToGroup);
+
+            // a rectangle intersecting the element's one has its y in ]y - height, y + height[
+            int groupIdx = Integer.MAX_VALUE;
+            for (List<Integer> candidates : groupsByY.subMap(
+                    elementRectangle.y - maxRepresentativeHeight, true,
+                    elementRectangle.y + elementRectangle.height, true).values()) {
+                for (int candidate : candidates) {
+                    if (candidate < groupIdx && representativeRectangles.get(candidate).intersects(elementRectangle)) {
+                        groupIdx = candidate;
+                    }
+                }
+            }
+
+            T representative;
+            if (groupIdx == Integer.MAX_VALUE) {
+                groupIdx = groups.size();
+                groups.add(new ArrayList<>());
+                representative = objectToGroup;
+                representatives.add(representative);
+                representativeRectangles.add(null);
+            } else {
+                representative = predicate.getRepresentative(representatives.get(groupIdx), objectToGroup);
+            }
+            groups.get(groupIdx).add(objectToGroup);
+
+            Rectangle previousRectangle = representativeRectangles.get(groupIdx);
+            if (previousRectangle == null || representative != representatives.get(groupIdx)) {
+                if (previousRectangle != null) {
+                    removeFromIndex(groupsByY, previousRectangle.y, groupIdx);
+                }
+
+                Rectangle representativeRectangle = predicate.getRepresentativeRectangle(representative);
+                representatives.set(groupIdx, representative);
+                representativeRectangles.set(groupIdx, representativeRectangle);
+                groupsByY.computeIfAbsent(representativeRectangle.y, y -> new ArrayList<>()).add(groupIdx);
+                maxRepresentativeHeight = Math.max(maxRepresentativeHeight, representativeRectangle.height);
+            }
+        }
+
+        return groups;
+    }
+
+    private static void removeFromIndex(Map<Integer, List<Integer>> groupsByY, int y, int groupIdx) {
+        List<Integer> groupsAtY = groupsByY.get(y);
+        groupsAtY.remove(Integer.valueOf(groupIdx));
+        if (groupsAtY.isEmpty()) {
+            groupsByY.remove(y);
+        }
+    }
+}
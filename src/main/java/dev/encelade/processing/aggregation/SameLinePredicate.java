@@ -3,13 +3,13 @@ package dev.encelade.processing.aggregation;
 import dev.encelade.ocr.model.Word;
 import com.google.common.collect.Iterables;
 
+import java.awt.*;
 import java.util.List;
-import java.util.function.BiPredicate;
 import java.util.logging.Logger;
 
 import static org.apache.commons.collections4.CollectionUtils.isEmpty;
 
-public class SameLinePredicate implements BiPredicate<Word, List<Word>> {
+public class SameLinePredicate implements SweepablePredicate<Word> {
 
     private final static Logger logger = Logger.getLogger(SameLinePredicate.class.getName());
 
@@ -20,6 +20,24 @@ public class SameLinePredicate implements BiPredicate<Word, List<Word>> {
         }
 
         Word lastAddedToGroup = Iterables.getLast(group);
-        return word.getWidthExpandedRectangle().intersects(lastAddedToGroup.getWidthExpandedRectangle());
+        return word.widthExpandedIntersects(lastAddedToGroup);
+    }
+
+    @Override
+    public Rectangle getElementRectangle(Word word) {
+        return word.getWidthExpandedRectangle();
+    }
+
+    /**
+     * The last word added to the line.
+     */
+    @Override
+    public Word getRepresentative(Word representative, Word added) {
+        return added;
+    }
+
+    @Override
+    public Rectangle getRepresentativeRectangle(Word representative) {
+        return representative.getWidthExpandedRectangle();
     }
 }
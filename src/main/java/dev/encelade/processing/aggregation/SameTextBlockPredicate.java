@@ -5,12 +5,11 @@ import dev.encelade.ocr.model.TextZone;
 
 import java.awt.*;
 import java.util.List;
-import java.util.function.BiPredicate;
 
 import static java.util.Comparator.comparingInt;
 import static org.apache.commons.collections4.CollectionUtils.isEmpty;
 
-public class SameTextBlockPredicate implements BiPredicate<TextLine, List<TextLine>> {
+public class SameTextBlockPredicate implements SweepablePredicate<TextLine> {
 
     private static final double PERCENT = 0.6;
 
@@ -29,4 +28,22 @@ public class SameTextBlockPredicate implements BiPredicate<TextLine, List<TextLi
 
         return lowestElementRectangle.intersects(thisRectangle);
     }
+
+    @Override
+    public Rectangle getElementRectangle(TextLine line) {
+        return line.getUpRectangle(PERCENT);
+    }
+
+    /**
+     * The lowest line of the block (the first one added if several are as low).
+     */
+    @Override
+    public TextLine getRepresentative(TextLine representative, TextLine added) {
+        return added.getY2() > representative.getY2() ? added : representative;
+    }
+
+    @Override
+    public Rectangle getRepresentativeRectangle(TextLine representative) {
+        return representative.getDownRectangle(PERCENT);
+    }
 }
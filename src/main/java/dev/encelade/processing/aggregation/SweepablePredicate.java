@@ -0,0 +1,28 @@
+package dev.encelade.processing.aggregation;
+
+import dev.encelade.ocr.model.TextZone;
+
+import java.awt.*;
+import java.util.List;
+import java.util.function.BiPredicate;
+
+/**
+ * Predicate where an element belongs to a group if its rectangle intersects the one of a single element of the group
+ * (its representative), which lets the {@link Aggregator} only test the groups whose representative is close to the
+ * element, instead of all of them.
+ */
+public interface SweepablePredicate<T extends TextZone> extends BiPredicate<T, List<T>> {
+
+    /**
+     * Rectangle of the element to group, tested against {@link #getRepresentativeRectangle(TextZone)}.
+     */
+    Rectangle getElementRectangle(T element);
+
+    /**
+     * @param representative representative of the group before the element was added
+     * @return the representative of the group once the element was added to it
+     */
+    T getRepresentative(T representative, T added);
+
+    Rectangle getRepresentativeRectangle(T representative);
+}
@@ -4,10 +4,13 @@ import dev.encelade.ocr.model.TextBlock;
 import dev.encelade.ocr.OCR;
 import dev.encelade.ocr.model.Page;
 import dev.encelade.ocr.model.Side;
+import dev.encelade.ocr.model.Word;
 import dev.encelade.utils.ImageUtils;
 
 import java.awt.*;
+import java.awt.geom.AffineTransform;
 import java.awt.geom.Line2D;
+import java.awt.geom.Point2D;
 import java.awt.image.BufferedImage;
 import java.util.ArrayList;
 import java.util.Comparator;
@@ -18,6 +21,7 @@ import static dev.encelade.ocr.model.Side.getAnglesPairs;
 import static dev.encelade.ocr.model.Side.listAllSides;
 import static dev.encelade.utils.GeometryUtils.distanceBetween;
 import static dev.encelade.utils.GeometryUtils.getIntersectionPoint;
+import static dev.encelade.utils.GeometryUtils.intersectsLine;
 import static java.lang.Math.abs;
 import static java.util.Collections.emptyList;
 import static java.util.Collections.max;
@@ -27,11 +31,12 @@ import static java.util.stream.Stream.of;
 
 public class AngleCorrection {
 
-    private final static double MIN_ANGLE = 0.03; // TODO: increase to avoid unnecessary work
-    private final static double MAX_ANGLE = 10;
+    final static double MIN_ANGLE = 0.03; // TODO: increase to avoid unnecessary work
+    final static double MAX_ANGLE = 10;
     private static final int MIN_LINES_TO_DETECT_ANGLES = 5;
 
     private Page originalPage;
+    private final boolean geometric;
     private Page correctedMostLikely;
     private Page correctLeastLikely;
 
@@ -42,7 +47,16 @@ public class AngleCorrection {
 //    private static Comparator<Page> resultComparator = comparingDouble(Page::getWordsOverlappingArea);
 
     public AngleCorrection(Page originalPage) {
+        this(originalPage, false);
+    }
+
+    /**
+     * @param geometric evaluate the candidate angles by rotating the words already detected, instead of rotating the
+     *                  image and running the OCR on it; only the image of the chosen page is rotated
+     */
+    public AngleCorrection(Page originalPage, boolean geometric) {
         this.originalPage = originalPage;
+        this.geometric = geometric;
     }
 
     public void detect() {
@@ -53,7 +67,24 @@ public class AngleCorrection {
         }
     }
 
+    /**
+     * The images of the pages that are not chosen are deleted.
+     */
     public Page process() {
+        Page corrected = selectCorrected();
+        if (corrected != originalPage) {
+            if (geometric) {
+                corrected.setOriginalImage(ImageUtils.rotate(originalPage.getOriginalImage(), corrected.getCorrectedAngleValue()));
+            }
+            originalPage.deleteImageData();
+        }
+        of(correctedMostLikely, correctLeastLikely)
+                .filter(candidate -> candidate != null && candidate != corrected && candidate != originalPage)
+                .forEach(Page::deleteImageData);
+        return corrected;
+    }
+
+    private Page selectCorrected() {
         if (originalPage.countLines() > 0 && hasCorrectiveAngleData()) {
             correctedMostLikely = rotateInMostLikelyDirection();
 
@@ -133,8 +164,13 @@ public class AngleCorrection {
 
     private Page rotateByAngle(double angle) {
         if (abs(angle) > MIN_ANGLE && abs(angle) < MAX_ANGLE) {
-            BufferedImage rotatedImage = ImageUtils.rotate(originalPage.getOriginalImage(), angle);
-            Page corrected = new OCR().analyze(rotatedImage, originalPage.getIdx());
+            Page corrected;
+            if (geometric) {
+                corrected = rotateWords(angle);
+            } else {
+                BufferedImage rotatedImage = ImageUtils.rotate(originalPage.getOriginalImage(), angle);
+                corrected = new OCR(originalPage.getRasterStoreFactory()).analyze(rotatedImage, originalPage.getIdx());
+            }
             corrected.detectTextBlocks();
             corrected.setCorrectedAngleValue(angle);
             return corrected;
@@ -143,6 +179,33 @@ public class AngleCorrection {
         }
     }
 
+    /**
+     * Move the center of each word as the rotation of the image would, keeping its size (the words are mostly
+     * horizontal once corrected).
+     */
+    private Page rotateWords(double angle) {
+        int w = originalPage.getWidth();
+        int h = originalPage.getHeight();
+        Dimension rotatedSize = ImageUtils.getRotatedSize(w, h, angle);
+        AffineTransform transform = ImageUtils.getRotationTransform(w, h, angle);
+
+        Page rotated = Page.withoutImage(originalPage.getIdx(), rotatedSize.width, rotatedSize.height, originalPage.getRasterStoreFactory());
+        rotated.setWords(originalPage.getWords()
+                .stream()
+                .map(word -> {
+                    Point2D center = new Point2D.Double(word.getRectangle().getCenterX(), word.getRectangle().getCenterY());
+                    transform.transform(center, center);
+
+                    int x = (int) Math.round(center.getX() - word.getWidth() / 2d);
+                    int y = (int) Math.round(center.getY() - word.getHeight() / 2d);
+                    return word.copy(new Rectangle(x, y, word.getWidth(), word.getHeight()), rotated);
+                })
+                .filter(Word::isValid)
+                .filter(rotated::isNotWithinMargin)
+                .collect(toList()));
+        return rotated;
+    }
+
     private boolean isLeaningClockwise() {
 //        return clockWiseQuadrilateral.getLengthsOffset() < counterClockWiseQuadrilateral.getLengthsOffset();
         return clockWiseQuadrilateral.getAnglesOffset() < counterClockWiseQuadrilateral.getAnglesOffset();
@@ -184,16 +247,7 @@ public class AngleCorrection {
     private static AngleCorrectionQuadrilateral detectCorrectiveAngle(TextBlock textBlock, boolean clockWise) {
         List<Line2D> lines = listAllSides(clockWise)
                 .stream()
-                .map(pointPlacementSide -> {
-                    Point oppositePoint = pointPlacementSide.getOppositePoint(textBlock, clockWise);
-                    Side wordsSide = pointPlacementSide.previous(clockWise);
-
-                    return pointPlacementSide.getPoints(textBlock, clockWise)
-                            .stream()
-                            .map(p -> new Line2D.Double(p.x, p.y, oppositePoint.x, oppositePoint.y))
-                            .max(comparingInt(line -> countIntersects(line, textBlock, wordsSide)))
-                            .get();
-                })
+                .map(pointPlacementSide -> findMostIntersectingLine(textBlock, pointPlacementSide, clockWise))
                 .collect(toList());
 
         AngleCorrectionQuadrilateral angleCorrectionQuadrilateral = new AngleCorrectionQuadrilateral();
@@ -201,12 +255,39 @@ public class AngleCorrection {
         return angleCorrectionQuadrilateral;
     }
 
-    private static int countIntersects(Line2D line, TextBlock textBlock, Side side) {
-        return (int) textBlock.getWordsOnSideBorders()
-                .get(side)
-                .stream()
-                .filter(word -> line.intersects(side.getCorrectedCollisionRectangle(word)))
-                .count();
+    /**
+     * Among the lines from each point of the side to the opposite point, the first one intersecting the most collision
+     * rectangles of the words on the previous side. The collision rectangles are computed once, and only the chosen
+     * line is created.
+     */
+    private static Line2D findMostIntersectingLine(TextBlock textBlock, Side pointPlacementSide, boolean clockWise) {
+        Point oppositePoint = pointPlacementSide.getOppositePoint(textBlock, clockWise);
+        Side wordsSide = pointPlacementSide.previous(clockWise);
+
+        List<Word> words = textBlock.getWordsOnSideBorders().get(wordsSide);
+        int[][] collisionRectangles = new int[words.size()][];
+        for (int i = 0; i < words.size(); i++) {
+            Rectangle rectangle = wordsSide.getCorrectedCollisionRectangle(words.get(i));
+            collisionRectangles[i] = new int[]{rectangle.x, rectangle.y, rectangle.width, rectangle.height};
+        }
+
+        // best count, then best point
+        int[] best = {-1, 0, 0};
+        pointPlacementSide.forEachPoint(textBlock, clockWise, (x, y) -> {
+            int count = 0;
+            for (int[] r : collisionRectangles) {
+                if (intersectsLine(r[0], r[1], r[2], r[3], x, y, oppositePoint.x, oppositePoint.y)) {
+                    count++;
+                }
+            }
+            if (count > best[0]) {
+                best[0] = count;
+                best[1] = x;
+                best[2] = y;
+            }
+        });
+
+        return new Line2D.Double(best[1], best[2], oppositePoint.x, oppositePoint.y);
     }
 
     /**
@@ -0,0 +1,143 @@
+package dev.encelade.processing.corrections;
+
+import dev.encelade.utils.ImageUtils;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.Raster;
+import java.util.logging.Logger;
+
+import static dev.encelade.processing.corrections.AngleCorrection.MAX_ANGLE;
+import static dev.encelade.processing.corrections.AngleCorrection.MIN_ANGLE;
+import static dev.encelade.utils.TimeUtils.formatMillis;
+import static java.lang.System.currentTimeMillis;
+
+/**
+ * Estimate the skew of a page from its image, before the OCR: the dark pixels of a downsampled copy of the page are
+ * projected on the vertical axis along each candidate angle, and the angle for which the text lines are the most
+ * aligned gives the most contrasted profile (the highest sum of squared counts).
+ */
+public class SkewEstimator {
+
+    private final static Logger logger = Logger.getLogger(SkewEstimator.class.getName());
+
+    private static final int DOWNSAMPLED_WIDTH = 600;
+    private static final int DARK_LEVEL = 128;
+    private static final int MIN_DARK_PIXELS = 500;
+
+    private static final double COARSE_STEP = 0.5;
+    private static final double FINE_STEP = 0.05;
+
+    // the best profile must be at least that much more contrasted than the one of the page as it is
+    private static final double MIN_SCORE_GAIN = 0.02;
+
+    private int[] darkX;
+    private int[] darkY;
+    private int nbrOfDarkPixels;
+    private int downsampledWidth;
+    private int downsampledHeight;
+
+    /**
+     * @return the angle to give to {@link ImageUtils#rotate(BufferedImage, double)} to straighten the page, or 0
+     */
+    public double estimateCorrectiveAngle(BufferedImage image) {
+        long begin = currentTimeMillis();
+
+        collectDarkPixels(image);
+        if (nbrOfDarkPixels < MIN_DARK_PIXELS) {
+            return 0;
+        }
+
+        double bestAngle = 0;
+        double bestScore = score(0);
+        double straightScore = bestScore;
+
+        for (double angle = -MAX_ANGLE; angle <= MAX_ANGLE; angle += COARSE_STEP) {
+            double score = score(angle);
+            if (score > bestScore) {
+                bestScore = score;
+                bestAngle = angle;
+            }
+        }
+
+        // around the best coarse angle, still within the angles the angle correction accepts
+        double fineMin = Math.max(-MAX_ANGLE, bestAngle - COARSE_STEP);
+        double fineMax = Math.min(MAX_ANGLE, bestAngle + COARSE_STEP);
+        for (double angle = fineMin; angle <= fineMax; angle += FINE_STEP) {
+            double score = score(angle);
+            if (score > bestScore) {
+                bestScore = score;
+                bestAngle = angle;
+            }
+        }
+
+        logger.info("skew estimation -> " + bestAngle + " in " + formatMillis(currentTimeMillis() - begin));
+
+        if (Math.abs(bestAngle) <= MIN_ANGLE || bestScore < straightScore * (1 + MIN_SCORE_GAIN)) {
+            return 0;
+        }
+
+        return bestAngle;
+    }
+
+    public BufferedImage deskew(BufferedImage image, double correctiveAngle) {
+        return correctiveAngle == 0 ? image : ImageUtils.rotate(image, correctiveAngle);
+    }
+
+    /**
+     * A pixel of the downsampled image is dark if any of the pixels it covers is.
+     */
+    private void collectDarkPixels(BufferedImage image) {
+        Raster raster = ImageUtils.toGray(image).getRaster();
+        int w = raster.getWidth();
+        int h = raster.getHeight();
+        int factor = Math.max(1, w / DOWNSAMPLED_WIDTH);
+
+        downsampledWidth = w / factor;
+        downsampledHeight = h / factor;
+
+        boolean[] dark = new boolean[downsampledWidth * downsampledHeight];
+        int[] row = new int[w];
+        for (int y = 0; y < downsampledHeight * factor; y++) {
+            raster.getSamples(0, y, w, 1, 0, row);
+            int offset = (y / factor) * downsampledWidth;
+            for (int x = 0; x < downsampledWidth * factor; x++) {
+                if (row[x] < DARK_LEVEL) {
+                    dark[offset + x / factor] = true;
+                }
+            }
+        }
+
+        darkX = new int[dark.length];
+        darkY = new int[dark.length];
+        nbrOfDarkPixels = 0;
+        for (int i = 0; i < dark.length; i++) {
+            if (dark[i]) {
+                darkX[nbrOfDarkPixels] = i % downsampledWidth;
+                darkY[nbrOfDarkPixels] = i / downsampledWidth;
+                nbrOfDarkPixels++;
+            }
+        }
+    }
+
+    /**
+     * Sum of the squared counts of the profile along lines of the given angle (y increasing with x when positive).
+     */
+    private double score(double angle) {
+        double tan = Math.tan(Math.toRadians(angle));
+        int maxShift = (int) Math.ceil(Math.abs(tan) * downsampledWidth);
+        int[] profile = new int[downsampledHeight + 2 * maxShift + 1];
+
+        for (int i = 0; i < nbrOfDarkPixels; i++) {
+            int bin = (int) Math.round(darkY[i] - darkX[i] * tan) + maxShift;
+            if (bin >= 0 && bin < profile.length) {
+                profile[bin]++;
+            }
+        }
+
+        double score = 0;
+        for (int count : profile) {
+            score += (double) count * count;
+        }
+        return score;
+    }
+}
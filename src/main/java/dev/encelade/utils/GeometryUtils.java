@@ -6,11 +6,14 @@ import java.awt.*;
 import java.awt.geom.Line2D;
 import java.awt.geom.Point2D;
 import java.awt.geom.RectangularShape;
+import java.util.ArrayList;
+import java.util.Arrays;
 
 import static com.google.common.collect.Iterables.getOnlyElement;
 import static java.util.Collections.max;
 import static java.util.Collections.min;
 import static java.util.Comparator.comparingDouble;
+import static java.util.Comparator.comparingInt;
 import static java.util.stream.Collectors.toList;
 
 public class GeometryUtils {
@@ -49,6 +52,47 @@ public class GeometryUtils {
         return new Rectangle(newX, newY, newWidth, newHeight);
     }
 
+    /**
+     * Sum of the areas of the intersections of all the pairs of rectangles (equal rectangles are not counted).
+     * <br>The rectangles are swept along the axis on which they are the shortest (y for text lines, which span most
+     * of the width of the page), each one being only tested against the previous ones overlapping it on that axis.
+     * This is not O(n log n) in the worst case: rectangles all overlapping on both axes are still tested in pairs.
+     */
+    public static double getOverlappingArea(java.util.List<Rectangle> rectangles) {
+        long totalWidth = 0;
+        long totalHeight = 0;
+        for (Rectangle rectangle : rectangles) {
+            totalWidth += rectangle.width;
+            totalHeight += rectangle.height;
+        }
+
+        // sweeping along y is sweeping the transposed rectangles along x, which keeps the areas and the equalities
+        Rectangle[] sorted = totalHeight < totalWidth
+                ? rectangles.stream().map(r -> new Rectangle(r.y, r.x, r.height, r.width)).toArray(Rectangle[]::new)
+                : rectangles.toArray(new Rectangle[0]);
+        Arrays.sort(sorted, comparingInt(rectangle -> rectangle.x));
+
+        double overlappingArea = 0;
+        java.util.List<Rectangle> active = new ArrayList<>();
+        for (Rectangle rectangle : sorted) {
+            active.removeIf(previous -> previous.x + previous.width <= rectangle.x);
+
+            for (Rectangle previous : active) {
+                if (!previous.equals(rectangle)) {
+                    int width = Math.min(previous.x + previous.width, rectangle.x + rectangle.width) - rectangle.x;
+                    int height = Math.min(previous.y + previous.height, rectangle.y + rectangle.height) - Math.max(previous.y, rectangle.y);
+                    if (width > 0 && height > 0) {
+                        overlappingArea += (double) width * height;
+                    }
+                }
+            }
+
+            active.add(rectangle);
+        }
+
+        return overlappingArea;
+    }
+
     public static double getLength(Line2D line2D) {
         return distanceBetween(line2D.getP1(), line2D.getP2());
     }
@@ -132,6 +176,69 @@ public class GeometryUtils {
         return mergeRectangles(textZones.stream().map(TextZone::getRectangle).collect(toList()));
     }
 
+    /**
+     * Same as {@link Rectangle#intersects(Rectangle)}, for rectangles given by their values.
+     */
+    public static boolean intersects(int x1, int y1, int width1, int height1, int x2, int y2, int width2, int height2) {
+        return width1 > 0 && height1 > 0 && width2 > 0 && height2 > 0
+                && x1 < x2 + width2 && x2 < x1 + width1
+                && y1 < y2 + height2 && y2 < y1 + height1;
+    }
+
+    /**
+     * Same as {@link Rectangle#intersectsLine(double, double, double, double)}, for a rectangle given by its values.
+     */
+    public static boolean intersectsLine(int x, int y, int width, int height, double x1, double y1, double x2, double y2) {
+        int out1;
+        int out2 = outcode(x, y, width, height, x2, y2);
+        if (out2 == 0) {
+            return true;
+        }
+        while ((out1 = outcode(x, y, width, height, x1, y1)) != 0) {
+            if ((out1 & out2) != 0) {
+                return false;
+            }
+            if ((out1 & (Rectangle.OUT_LEFT | Rectangle.OUT_RIGHT)) != 0) {
+                double bound = x;
+                if ((out1 & Rectangle.OUT_RIGHT) != 0) {
+                    bound += width;
+                }
+                y1 = y1 + (bound - x1) * (y2 - y1) / (x2 - x1);
+                x1 = bound;
+            } else {
+                double bound = y;
+                if ((out1 & Rectangle.OUT_BOTTOM) != 0) {
+                    bound += height;
+                }
+                x1 = x1 + (bound - y1) * (x2 - x1) / (y2 - y1);
+                y1 = bound;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Same as {@link Rectangle#outcode(double, double)}.
+     */
+    private static int outcode(int x, int y, int width, int height, double px, double py) {
+        int out = 0;
+        if (width <= 0) {
+            out |= Rectangle.OUT_LEFT | Rectangle.OUT_RIGHT;
+        } else if (px < x) {
+            out |= Rectangle.OUT_LEFT;
+        } else if (px > x + (double) width) {
+            out |= Rectangle.OUT_RIGHT;
+        }
+        if (height <= 0) {
+            out |= Rectangle.OUT_TOP | Rectangle.OUT_BOTTOM;
+        } else if (py < y) {
+            out |= Rectangle.OUT_TOP;
+        } else if (py > y + (double) height) {
+            out |= Rectangle.OUT_BOTTOM;
+        }
+        return out;
+    }
+
     public static boolean intersects(Rectangle rectangle, Point p1, Point p2) {
         Line2D l1 = new Line2D.Double(p1.x, p1.y, p2.x, p2.y);
         return l1.intersects(rectangle);
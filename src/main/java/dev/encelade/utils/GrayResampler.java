@@ -0,0 +1,175 @@
+package dev.encelade.utils;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.Raster;
+import java.awt.image.WritableRaster;
+import java.util.stream.IntStream;
+
+import static java.awt.image.BufferedImage.TYPE_BYTE_GRAY;
+
+/**
+ * Resize images in gray levels, in two separable passes (the rows, then the columns) with weights computed once per
+ * row and column of the result: the average of the covered pixels when reducing (like
+ * {@link java.awt.Image#SCALE_SMOOTH SCALE_SMOOTH}), a bilinear interpolation when enlarging.
+ */
+public class GrayResampler {
+
+    // weights in fixed point
+    private static final int WEIGHT_BITS = 14;
+
+    // precision kept between the 2 passes, in bits beyond the 8 bits of a gray level
+    private static final int INTERMEDIATE_BITS = 8;
+
+    // below that many pixels in the source, the rows are not computed in parallel
+    private static final int MIN_PIXELS_FOR_PARALLEL = 512 * 512;
+
+    public static BufferedImage resize(BufferedImage image, int newW, int newH) {
+        BufferedImage result = new BufferedImage(newW, newH, TYPE_BYTE_GRAY);
+        resizeInto(image, result, 0, 0, newW, newH);
+        return result;
+    }
+
+    /**
+     * Write the resized image directly in the target, its top left corner at (x, y). What falls outside of the target
+     * is left out.
+     *
+     * @param target in gray levels
+     */
+    public static void resizeInto(BufferedImage image, BufferedImage target, int x, int y, int newW, int newH) {
+        int minX = Math.max(0, -x);
+        int maxX = Math.min(newW, target.getWidth() - x);
+        int minY = Math.max(0, -y);
+        int maxY = Math.min(newH, target.getHeight() - y);
+        if (minX >= maxX || minY >= maxY) {
+            return;
+        }
+
+        Raster source = ImageUtils.toGray(image).getRaster();
+        int w = source.getWidth();
+        int h = source.getHeight();
+        boolean parallel = (long) w * h >= MIN_PIXELS_FOR_PARALLEL;
+
+        Kernel columns = new Kernel(w, newW);
+        Kernel rows = new Kernel(h, newH);
+
+        // only the source rows used by the visible part of the result
+        int firstRow = rows.start[minY];
+        int lastRow = rows.start[maxY - 1] + rows.length[maxY - 1];
+
+        int intermediateWidth = maxX - minX;
+        int[] intermediate = new int[(lastRow - firstRow) * intermediateWidth];
+
+        range(firstRow, lastRow, parallel).forEach(sourceY -> {
+            byte[] row = (byte[]) source.getDataElements(0, sourceY, w, 1, null);
+            int offset = (sourceY - firstRow) * intermediateWidth;
+            for (int i = minX; i < maxX; i++) {
+                int sum = 0;
+                int k = i * columns.maxLength;
+                for (int j = columns.start[i], end = j + columns.length[i]; j < end; j++, k++) {
+                    sum += columns.weights[k] * (row[j] & 0xFF);
+                }
+                intermediate[offset + i - minX] = (sum + (1 << (WEIGHT_BITS - INTERMEDIATE_BITS - 1))) >> (WEIGHT_BITS - INTERMEDIATE_BITS);
+            }
+        });
+
+        WritableRaster targetRaster = target.getRaster();
+        int shift = WEIGHT_BITS + INTERMEDIATE_BITS;
+        range(minY, maxY, parallel).forEach(i -> {
+            int[] sums = new int[intermediateWidth];
+            int k = i * rows.maxLength;
+            for (int j = rows.start[i], end = j + rows.length[i]; j < end; j++, k++) {
+                int weight = rows.weights[k];
+                int offset = (j - firstRow) * intermediateWidth;
+                for (int c = 0; c < intermediateWidth; c++) {
+                    sums[c] += weight * intermediate[offset + c];
+                }
+            }
+
+            byte[] row = new byte[intermediateWidth];
+            for (int c = 0; c < intermediateWidth; c++) {
+                row[c] = (byte) Math.min(255, (sums[c] + (1 << (shift - 1))) >> shift);
+            }
+            targetRaster.setDataElements(x + minX, y + i, intermediateWidth, 1, row);
+        });
+    }
+
+    private static IntStream range(int from, int to, boolean parallel) {
+        IntStream range = IntStream.range(from, to);
+        return parallel ? range.parallel() : range;
+    }
+
+    /**
+     * For each pixel of the result on one axis, the source pixels it is made of and their weights.
+     */
+    private static class Kernel {
+
+        private final int[] start;
+        private final int[] length;
+        private final int maxLength;
+        private final int[] weights;
+
+        private Kernel(int size, int newSize) {
+            double scale = (double) newSize / size;
+            this.maxLength = scale < 1 ? (int) Math.ceil(1 / scale) + 1 : 2;
+            this.start = new int[newSize];
+            this.length = new int[newSize];
+            this.weights = new int[newSize * maxLength];
+
+            double[] doubleWeights = new double[maxLength];
+            for (int i = 0; i < newSize; i++) {
+                int first;
+                int count;
+                if (scale < 1) {
+                    // covered part of each source pixel
+                    double begin = i / scale;
+                    double end = Math.min(size, (i + 1) / scale);
+                    first = (int) Math.floor(begin);
+                    count = Math.min(size, (int) Math.ceil(end)) - first;
+                    for (int j = 0; j < count; j++) {
+                        doubleWeights[j] = Math.min(end, first + j + 1) - Math.max(begin, first + j);
+                    }
+                } else {
+                    double center = (i + 0.5) / scale - 0.5;
+                    first = (int) Math.floor(center);
+                    double fraction = center - first;
+                    if (first < 0) {
+                        first = 0;
+                        fraction = 0;
+                    } else if (first >= size - 1) {
+                        first = size - 1;
+                        fraction = 0;
+                    }
+                    count = fraction == 0 ? 1 : 2;
+                    doubleWeights[0] = 1 - fraction;
+                    doubleWeights[1] = fraction;
+                }
+
+                start[i] = first;
+                length[i] = count;
+                setWeights(i, doubleWeights, count);
+            }
+        }
+
+        /**
+         * In fixed point, the weights always add up to exactly 1.
+         */
+        private void setWeights(int i, double[] doubleWeights, int count) {
+            double total = 0;
+            for (int j = 0; j < count; j++) {
+                total += doubleWeights[j];
+            }
+
+            int sum = 0;
+            int largest = 0;
+            for (int j = 0; j < count; j++) {
+                int weight = (int) Math.round(doubleWeights[j] / total * (1 << WEIGHT_BITS));
+                weights[i * maxLength + j] = weight;
+                sum += weight;
+                if (weight > weights[i * maxLength + largest]) {
+                    largest = j;
+                }
+            }
+            weights[i * maxLength + largest] += (1 << WEIGHT_BITS) - sum;
+        }
+    }
+}
@@ -9,16 +9,19 @@ import javax.imageio.ImageWriter;
 import javax.imageio.stream.ImageOutputStream;
 import java.awt.*;
 import java.awt.geom.AffineTransform;
+import java.awt.geom.NoninvertibleTransformException;
 import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.util.Iterator;
 import java.util.logging.Logger;
+import java.util.stream.IntStream;
 
 import static java.awt.Color.WHITE;
 import static java.awt.Image.SCALE_SMOOTH;
-import static java.awt.RenderingHints.*;
+import static java.awt.image.BufferedImage.TYPE_BYTE_GRAY;
 
 public class ImageUtils {
 
@@ -26,48 +29,141 @@ public class ImageUtils {
 
     private static final boolean DUMP_DEBUG_IMAGES = true;
 
+    // positions in fixed point when rotating, 16 bits for the fractional part
+    private static final int FIXED_POINT_ONE = 1 << 16;
+
     public static void dumpToImageFile(String fileName, Page page) {
         if (DUMP_DEBUG_IMAGES) {
             new Printer(page, fileName).dumpToImageFile();
         }
     }
 
-    public static BufferedImage rotate(BufferedImage image, double angle) {
+    /**
+     * Size of an image of w x h once rotated by {@link #rotate(BufferedImage, double)}.
+     */
+    public static Dimension getRotatedSize(int w, int h, double angle) {
         float radianAngle = (float) Math.toRadians(-angle);
 
         float sin = (float) Math.abs(Math.sin(radianAngle));
         float cos = (float) Math.abs(Math.cos(radianAngle));
 
+        return new Dimension(Math.round(w * cos + h * sin), Math.round(h * cos + w * sin));
+    }
+
+    /**
+     * Transformation applied by {@link #rotate(BufferedImage, double)} to an image of w x h, from its coordinates to
+     * the ones of the rotated image.
+     */
+    public static AffineTransform getRotationTransform(int w, int h, double angle) {
+        float radianAngle = (float) Math.toRadians(-angle);
+
+        Dimension newSize = getRotatedSize(w, h, angle);
+
+        AffineTransform at = AffineTransform.getTranslateInstance((newSize.width - w) / 2, (newSize.height - h) / 2);
+        at.rotate(radianAngle, w / 2, h / 2);
+        return at;
+    }
+
+    /**
+     * Rotate the image in gray levels, with a bilinear interpolation and a white background, working directly on the
+     * bytes of the pixels (the rows are computed in parallel).
+     */
+    public static BufferedImage rotate(BufferedImage image, double angle) {
         int w = image.getWidth();
         int h = image.getHeight();
 
-        int newWidth = Math.round(w * cos + h * sin);
-        int newHeight = Math.round(h * cos + w * sin);
+        Dimension newSize = getRotatedSize(w, h, angle);
+        int newWidth = newSize.width;
+        int newHeight = newSize.height;
+
+        AffineTransform inverse;
+        try {
+            inverse = getRotationTransform(w, h, angle).createInverse();
+        } catch (NoninvertibleTransformException e) {
+            throw new RuntimeException(e);
+        }
 
-        GraphicsEnvironment ge = GraphicsEnvironment.getLocalGraphicsEnvironment();
-        GraphicsDevice gd = ge.getDefaultScreenDevice();
-        GraphicsConfiguration gc = gd.getDefaultConfiguration();
+        // source position of the center of the pixel (x, y) of the result: m02 + x * m00 + y * m01, m12 + x * m10 + y * m11
+        double[] m = new double[6];
+        inverse.getMatrix(m);
+        double m00 = m[0], m10 = m[1], m01 = m[2], m11 = m[3];
+        double m02 = m[4] + 0.5 * (m00 + m01) - 0.5;
+        double m12 = m[5] + 0.5 * (m10 + m11) - 0.5;
 
-        BufferedImage result = gc.createCompatibleImage(newWidth, newHeight, Transparency.OPAQUE);
-        Graphics2D g = result.createGraphics();
-        g.setColor(WHITE);
-        g.fillRect(0, 0, result.getWidth(), result.getHeight());
+        BufferedImage grayImage = toGray(image);
+        byte[] source = (byte[]) grayImage.getRaster().getDataElements(0, 0, w, h, null);
 
-        //-----------------------MODIFIED--------------------------------------
-        g.setRenderingHint(KEY_ANTIALIASING, VALUE_ANTIALIAS_ON);
-        // g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BICUBIC);
-        g.setRenderingHint(KEY_RENDERING, VALUE_RENDER_QUALITY);
+        BufferedImage result = new BufferedImage(newWidth, newHeight, TYPE_BYTE_GRAY);
+        byte[] target = ((DataBufferByte) result.getRaster().getDataBuffer()).getData();
 
-        AffineTransform at = AffineTransform.getTranslateInstance((newWidth - w) / 2, (newHeight - h) / 2);
-        at.rotate(radianAngle, w / 2, h / 2);
-        //---------------------------------------------------------------------
+        long stepX = Math.round(m00 * FIXED_POINT_ONE);
+        long stepY = Math.round(m10 * FIXED_POINT_ONE);
 
-        g.drawRenderedImage(image, at);
-        g.dispose();
+        IntStream.range(0, newHeight).parallel().forEach(y -> {
+            long sx = Math.round((m02 + y * m01) * FIXED_POINT_ONE);
+            long sy = Math.round((m12 + y * m11) * FIXED_POINT_ONE);
+            int offset = y * newWidth;
+            for (int x = 0; x < newWidth; x++, sx += stepX, sy += stepY) {
+                target[offset + x] = (byte) interpolate(source, w, h, sx, sy);
+            }
+        });
 
         return result;
     }
 
+    /**
+     * @param x fixed point
+     * @param y fixed point
+     */
+    private static int interpolate(byte[] pixels, int w, int h, long x, long y) {
+        int x0 = (int) (x >> 16);
+        int y0 = (int) (y >> 16);
+        if (x0 < -1 || y0 < -1 || x0 >= w || y0 >= h) {
+            return 255;
+        }
+
+        // weights of the right and bottom pixels, out of 256
+        int fx = (int) (x & 0xFFFF) >> 8;
+        int fy = (int) (y & 0xFFFF) >> 8;
+
+        int p00, p10, p01, p11;
+        if (x0 >= 0 && y0 >= 0 && x0 + 1 < w && y0 + 1 < h) {
+            int i = y0 * w + x0;
+            p00 = pixels[i] & 0xFF;
+            p10 = pixels[i + 1] & 0xFF;
+            p01 = pixels[i + w] & 0xFF;
+            p11 = pixels[i + w + 1] & 0xFF;
+        } else {
+            // on the border of the image, the pixels outside are white
+            p00 = getGrayLevel(pixels, w, h, x0, y0);
+            p10 = getGrayLevel(pixels, w, h, x0 + 1, y0);
+            p01 = getGrayLevel(pixels, w, h, x0, y0 + 1);
+            p11 = getGrayLevel(pixels, w, h, x0 + 1, y0 + 1);
+        }
+
+        int top = (p00 << 8) + fx * (p10 - p00);
+        int bottom = (p01 << 8) + fx * (p11 - p01);
+        return ((top << 8) + fy * (bottom - top) + (1 << 15)) >> 16;
+    }
+
+    private static int getGrayLevel(byte[] pixels, int w, int h, int x, int y) {
+        return x < 0 || y < 0 || x >= w || y >= h ? 255 : pixels[y * w + x] & 0xFF;
+    }
+
+    public static BufferedImage toGray(BufferedImage image) {
+        if (image.getType() == TYPE_BYTE_GRAY) {
+            return image;
+        }
+
+        BufferedImage grayImage = new BufferedImage(image.getWidth(), image.getHeight(), TYPE_BYTE_GRAY);
+        Graphics2D g = grayImage.createGraphics();
+        g.setColor(WHITE);
+        g.fillRect(0, 0, grayImage.getWidth(), grayImage.getHeight());
+        g.drawImage(image, 0, 0, null);
+        g.dispose();
+        return grayImage;
+    }
+
     public static BufferedImage toBufferedImage(Image image) {
         if (image instanceof BufferedImage) {
             return (BufferedImage) image;
@@ -89,12 +185,19 @@ public class ImageUtils {
         return resize(bufferedImage, (int) (ratio * bufferedImage.getWidth()), (int) (ratio * bufferedImage.getHeight()), bufferedImageType);
     }
 
+    /**
+     * In gray levels, see {@link GrayResampler}.
+     */
     public static BufferedImage resize(BufferedImage img, int newW, int newH, int bufferedImageType) {
 //        if (newW <= 0 || newH <= 0) {
 //            logger.severe("illegal values [" + newW + ", " + newH + "]");
 //            return img;
 //        }
 
+        if (bufferedImageType == TYPE_BYTE_GRAY) {
+            return GrayResampler.resize(img, newW, newH);
+        }
+
         Image tmp = img.getScaledInstance(newW, newH, SCALE_SMOOTH);
         BufferedImage dimg = new BufferedImage(newW, newH, bufferedImageType);
 
@@ -105,15 +208,26 @@ public class ImageUtils {
         return dimg;
     }
 
-    // https://stackoverflow.com/questions/28439136/java-image-compression-for-any-image-formatjpg-png-gif
     public static BufferedImage compress(BufferedImage image, float quality) {
         try {
-            ByteArrayOutputStream os = new ByteArrayOutputStream();
+            return ImageIO.read(new ByteArrayInputStream(encode(image, quality)));
+        } catch (IOException e) {
+            logger.warning(e.toString());
+            return image;
+        }
+    }
+
+    /**
+     * @param quality JPEG quality, between 0 and 1
+     */
+    // https://stackoverflow.com/questions/28439136/java-image-compression-for-any-image-formatjpg-png-gif
+    public static byte[] encode(BufferedImage image, float quality) throws IOException {
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
 
-            Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName("jpg");
-            ImageWriter writer = writers.next();
+        Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName("jpg");
+        ImageWriter writer = writers.next();
 
-            ImageOutputStream ios = ImageIO.createImageOutputStream(os);
+        try (ImageOutputStream ios = ImageIO.createImageOutputStream(os)) {
             writer.setOutput(ios);
 
             ImageWriteParam param = writer.getDefaultWriteParam();
@@ -124,12 +238,10 @@ public class ImageUtils {
             }
             // End of check
             writer.write(null, new IIOImage(image, null, null), param);
-
-            byte[] bytes = os.toByteArray();
-            return ImageIO.read(new ByteArrayInputStream(bytes));
-        } catch (IOException e) {
-            logger.warning(e.toString());
-            return image;
+        } finally {
+            writer.dispose();
         }
+
+        return os.toByteArray();
     }
 }
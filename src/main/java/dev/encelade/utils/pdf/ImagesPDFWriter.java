@@ -0,0 +1,63 @@
+package dev.encelade.utils.pdf;
+
+import com.itextpdf.text.Document;
+import com.itextpdf.text.DocumentException;
+import com.itextpdf.text.Image;
+import com.itextpdf.text.Rectangle;
+import com.itextpdf.text.pdf.PdfWriter;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Writes the output images to a PDF one by one, as they are added, instead of keeping all of them in memory until
+ * the end (uses itext library).
+ * <br>The size of the pages of the PDF is the one of the first image.
+ */
+public class ImagesPDFWriter implements Closeable {
+
+    private final OutputStream outputStream;
+    private final float compressionRate;
+
+    private Document document;
+
+    public ImagesPDFWriter(OutputStream outputStream, float compressionRate) {
+        this.outputStream = outputStream;
+        this.compressionRate = compressionRate;
+    }
+
+    /**
+     * @param imageData encoded image (JPEG) of the next page
+     */
+    public void add(byte[] imageData) throws IOException, DocumentException {
+        if (document == null) {
+            BufferedImage firstImage = ImageIO.read(new ByteArrayInputStream(imageData));
+            document = new Document(new Rectangle(0, 0, firstImage.getWidth(), firstImage.getHeight()));
+            PdfWriter writer = PdfWriter.getInstance(document, outputStream);
+            writer.setCompressionLevel(10 - ((int) (10 * compressionRate))); // between 0 and 9
+            document.open();
+        }
+
+        document.newPage();
+        Image pdfImage = Image.getInstance(imageData);
+        pdfImage.setAbsolutePosition(0, 0);
+        pdfImage.setBorderWidth(0);
+        document.add(pdfImage);
+    }
+
+    /**
+     * Also closes the output stream.
+     */
+    @Override
+    public void close() throws IOException {
+        if (document != null) {
+            document.close();
+        } else {
+            outputStream.close();
+        }
+    }
+}
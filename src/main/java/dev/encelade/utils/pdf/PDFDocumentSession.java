@@ -0,0 +1,199 @@
+package dev.encelade.utils.pdf;
+
+import dev.encelade.ocr.TextLayerExtractor;
+import dev.encelade.ocr.model.Page;
+import dev.encelade.processing.RequestConfig;
+import dev.encelade.utils.raster.RasterStoreFactory;
+import org.apache.commons.lang3.tuple.ImmutablePair;
+import org.apache.pdfbox.io.MemoryUsageSetting;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.rendering.PDFRenderer;
+
+import java.awt.image.BufferedImage;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Logger;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static dev.encelade.utils.pdf.PDFUtils.extractScanImage;
+import static dev.encelade.utils.pdf.PDFUtils.getAdaptiveResolution;
+import static dev.encelade.utils.pdf.PDFUtils.getMemoryUsageSetting;
+import static dev.encelade.utils.pdf.PDFUtils.getResolution;
+import static dev.encelade.utils.pdf.PDFUtils.loadDocument;
+import static org.apache.pdfbox.rendering.ImageType.GRAY;
+
+/**
+ * Keeps the PDF of a request loaded while its pages are rendered, instead of parsing the whole document for every page.
+ * <br>A {@link PDDocument} can not be used from several threads at once, so each worker thread gets its own document
+ * and renderer, loaded the first time that thread needs a page and re-used for all the following ones.
+ * <br>When the request is {@link RequestConfig#isDiskBacked() disk backed}, PDFBox keeps its data in scratch files
+ * beyond the heap budget, and a document given as a byte array is written once to a temporary file, that all the
+ * workers read from. The heap budget is for the whole session, so it is shared between the documents of the threads.
+ */
+public class PDFDocumentSession implements Closeable {
+
+    private final static Logger logger = Logger.getLogger(PDFDocumentSession.class.getName());
+
+    private final RequestConfig requestConfig;
+    private final MemoryUsageSetting memoryUsageSetting;
+    private final File spilledPdfFile;
+    private final int numberOfPages;
+
+    private final Map<Thread, PDDocument> threadDocuments = new ConcurrentHashMap<>();
+    private final Map<Thread, PDFRenderer> renderers = new ConcurrentHashMap<>();
+
+    private volatile boolean closed = false;
+
+    public PDFDocumentSession(RequestConfig requestConfig) {
+        this.requestConfig = requestConfig;
+        this.memoryUsageSetting = getMemoryUsageSetting(getBudgetPerDocument(requestConfig.getMaxMainMemoryBytes()), requestConfig.getScratchDirectory());
+        this.spilledPdfFile = requestConfig.isDiskBacked() && requestConfig.isByteArray() ? spillToFile(requestConfig) : null;
+        this.numberOfPages = getDocument().getNumberOfPages();
+    }
+
+    public int getNumberOfPages() {
+        return numberOfPages;
+    }
+
+    /**
+     * @param pageIdx starts at 1
+     */
+    public BufferedImage renderPage(int pageIdx) throws IOException {
+        if (closed) {
+            throw new IllegalStateException();
+        }
+
+        logger.info("loading page " + (pageIdx - 1));
+
+        if (requestConfig.isExtractEmbeddedImages()) {
+            BufferedImage scanImage = extractScanImage(getDocument().getPage(pageIdx - 1));
+            if (scanImage != null) {
+                return scanImage;
+            }
+        }
+
+        float resolution = getResolution(requestConfig);
+        if (requestConfig.isAdaptiveResolution()) {
+            resolution = getAdaptiveResolution(getRenderer(), pageIdx - 1, resolution);
+        }
+
+        return getRenderer().renderImageWithDPI(pageIdx - 1, resolution, GRAY);
+    }
+
+    /**
+     * Words of the page from the text layer of the document, see {@link TextLayerExtractor}.
+     *
+     * @param pageIdx            starts at 1
+     * @param image              the rendered page, the positions of the words are scaled to it
+     * @param rasterStoreFactory keeps the image of the page
+     * @return null if the page doesn't have a (usable) text layer
+     */
+    public Page extractTextLayer(int pageIdx, BufferedImage image, RasterStoreFactory rasterStoreFactory) {
+        try {
+            return new TextLayerExtractor(rasterStoreFactory).analyze(getDocument(), image, pageIdx);
+        } catch (IOException e) {
+            logger.warning(e.toString());
+            return null;
+        }
+    }
+
+    /**
+     * Render the pages between {@link RequestConfig#getMinPage()} and {@link RequestConfig#getMaxPage()}, in parallel.
+     */
+    public Stream<ImmutablePair<Integer, BufferedImage>> getImagesMapAsStream() {
+        assert requestConfig.getMinPage() >= 1;
+        assert requestConfig.getMaxPage() < Integer.MAX_VALUE;
+
+        final int begin = requestConfig.getMinPage();
+        final int end = requestConfig.getMaxPage();
+
+        return IntStream
+                .rangeClosed(begin, end)
+                .parallel()
+                .mapToObj(pageIdx -> {
+                    try {
+                        return new ImmutablePair<>(pageIdx, renderPage(pageIdx));
+                    } catch (IOException e) {
+                        logger.warning(e.toString());
+                        return null;
+                    }
+                })
+                .filter(Objects::nonNull);
+    }
+
+    /**
+     * There is a document per worker (as many as cores), plus the one of the thread creating the session.
+     */
+    private static Long getBudgetPerDocument(Long maxMainMemoryBytes) {
+        if (maxMainMemoryBytes == null || maxMainMemoryBytes <= 0) {
+            return maxMainMemoryBytes;
+        }
+
+        int maxDocuments = Runtime.getRuntime().availableProcessors() + 1;
+        return Math.max(1, maxMainMemoryBytes / maxDocuments);
+    }
+
+    private PDDocument getDocument() {
+        if (closed) {
+            throw new IllegalStateException("session closed");
+        }
+
+        return threadDocuments.computeIfAbsent(Thread.currentThread(), this::openDocument);
+    }
+
+    private PDFRenderer getRenderer() {
+        return renderers.computeIfAbsent(Thread.currentThread(), thread -> new PDFRenderer(getDocument()));
+    }
+
+    private PDDocument openDocument(Thread thread) {
+        try {
+            logger.info("loading document for " + thread.getName());
+            if (spilledPdfFile != null) {
+                return loadDocument(spilledPdfFile, null, memoryUsageSetting);
+            } else {
+                return loadDocument(requestConfig.getPdfFile(), requestConfig.getPdfData(), memoryUsageSetting);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static File spillToFile(RequestConfig requestConfig) {
+        try {
+            File file = File.createTempFile("request", ".pdf", requestConfig.getScratchDirectory());
+            file.deleteOnExit();
+            Files.write(file.toPath(), requestConfig.getPdfData());
+            return file;
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+
+        closed = true;
+        renderers.clear();
+        for (PDDocument document : threadDocuments.values()) {
+            try {
+                document.close();
+            } catch (IOException e) {
+                logger.warning(e.toString());
+            }
+        }
+        threadDocuments.clear();
+
+        if (spilledPdfFile != null && !spilledPdfFile.delete()) {
+            logger.warning("could not delete " + spilledPdfFile);
+        }
+    }
+}
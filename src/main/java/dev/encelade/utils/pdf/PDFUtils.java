@@ -1,24 +1,29 @@
 package dev.encelade.utils.pdf;
 
 import dev.encelade.processing.RequestConfig;
-import com.itextpdf.text.Document;
 import com.itextpdf.text.DocumentException;
-import com.itextpdf.text.Image;
-import com.itextpdf.text.Rectangle;
-import com.itextpdf.text.pdf.PdfWriter;
 import org.apache.commons.lang3.tuple.ImmutablePair;
+import org.apache.commons.math3.stat.descriptive.DescriptiveStatistics;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.io.MemoryUsageSetting;
 import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDResources;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.pdmodel.graphics.image.PDImageXObject;
 import org.apache.pdfbox.rendering.PDFRenderer;
 
 import javax.imageio.ImageIO;
 import java.awt.image.BufferedImage;
+import java.awt.image.Raster;
 import java.io.*;
 import java.util.*;
 import java.util.logging.Logger;
-import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
 import static com.google.common.collect.Iterables.getOnlyElement;
+import static dev.encelade.utils.ImageUtils.toGray;
+import static java.lang.Math.abs;
 import static java.lang.Math.max;
 import static java.lang.Math.min;
 import static java.util.stream.Collectors.toMap;
@@ -31,22 +36,27 @@ public class PDFUtils {
     private static final int MIN_RESOLUTION = 100;
     private static final int DEFAULT_RESOLUTION = 300;
 
+    // adaptive resolution: the page is first rendered at PROBE_RESOLUTION to measure the height of its text lines
+    private static final float PROBE_RESOLUTION = 72;
+    private static final int TARGET_TEXT_LINE_HEIGHT = 40; // in pixels, for the OCR
+    private static final int MIN_TEXT_LINES = 3;
+    private static final int DARK_PIXEL_LEVEL = 128;
+    private static final double MIN_DARK_PIXELS_PER_TEXT_ROW = 0.005; // of the width
+    // at PROBE_RESOLUTION, a taller run is several lines merged together (skew, tight leading), not a text line
+    private static final int MAX_TEXT_LINE_HEIGHT = 24;
+    // beyond that ratio of the dark rows in merged runs, the height of the lines can't be measured
+    private static final double MAX_MERGED_ROWS_RATIO = 0.5;
+
+    // tolerance between the aspect ratio of a page and the one of its image, to consider the page is only a scan
+    private static final double MAX_SCAN_ASPECT_RATIO_DELTA = 0.02;
+
     // uses itext library
     public static void imagesToPDF(List<byte[]> imageDatas, OutputStream outputStream, float compressionRate) throws IOException, DocumentException {
-        BufferedImage firstImage = ImageIO.read(new ByteArrayInputStream(imageDatas.get(0)));
-        Document document = new Document(new Rectangle(0, 0, firstImage.getWidth(), firstImage.getHeight()));
-        PdfWriter writer = PdfWriter.getInstance(document, outputStream);
-        writer.setCompressionLevel(10 - ((int) (10 * compressionRate))); // between 0 and 9
-        document.open();
-
-        for (byte[] imageData : imageDatas) {
-            document.newPage();
-            Image pdfImage = Image.getInstance(imageData);
-            pdfImage.setAbsolutePosition(0, 0);
-            pdfImage.setBorderWidth(0);
-            document.add(pdfImage);
+        try (ImagesPDFWriter writer = new ImagesPDFWriter(outputStream, compressionRate)) {
+            for (byte[] imageData : imageDatas) {
+                writer.add(imageData);
+            }
         }
-        document.close();
     }
 
     private static byte[] getByteArray(BufferedImage image) throws IOException {
@@ -56,7 +66,10 @@ public class PDFUtils {
     }
 
     public static int getEffectiveMaxPage(RequestConfig requestConfig) {
-        int numberOfPagesInDocument = getNumberOfPagesInPDF(requestConfig);
+        return getEffectiveMaxPage(requestConfig, getNumberOfPagesInPDF(requestConfig));
+    }
+
+    public static int getEffectiveMaxPage(RequestConfig requestConfig, int numberOfPagesInDocument) {
         if (requestConfig.getMaxPage() == null) {
             return numberOfPagesInDocument;
         } else {
@@ -72,45 +85,179 @@ public class PDFUtils {
         }
     }
 
-    private static PDDocument loadDocument(RequestConfig requestConfig) throws IOException {
-        if (requestConfig.isFile()) {
-            return PDDocument.load(requestConfig.getPdfFile());
-        } else if (requestConfig.isByteArray()) {
-            return PDDocument.load(requestConfig.getPdfData());
+    static PDDocument loadDocument(RequestConfig requestConfig) throws IOException {
+        return loadDocument(requestConfig.getPdfFile(), requestConfig.getPdfData(), getMemoryUsageSetting(requestConfig));
+    }
+
+    static PDDocument loadDocument(File pdfFile, byte[] pdfData, MemoryUsageSetting memoryUsageSetting) throws IOException {
+        if (pdfFile != null) {
+            return PDDocument.load(pdfFile, memoryUsageSetting);
+        } else if (pdfData != null) {
+            return PDDocument.load(pdfData, "", null, null, memoryUsageSetting);
         } else {
             throw new IllegalStateException();
         }
     }
 
+    static MemoryUsageSetting getMemoryUsageSetting(RequestConfig requestConfig) {
+        return getMemoryUsageSetting(requestConfig.getMaxMainMemoryBytes(), requestConfig.getScratchDirectory());
+    }
+
+    /**
+     * @param maxMainMemoryBytes null to keep everything in the heap, 0 to only use scratch files
+     * @param scratchDirectory   null for the default temporary directory
+     */
+    static MemoryUsageSetting getMemoryUsageSetting(Long maxMainMemoryBytes, File scratchDirectory) {
+        if (maxMainMemoryBytes == null) {
+            return MemoryUsageSetting.setupMainMemoryOnly();
+        }
+
+        MemoryUsageSetting memoryUsageSetting;
+        if (maxMainMemoryBytes <= 0) {
+            memoryUsageSetting = MemoryUsageSetting.setupTempFileOnly();
+        } else {
+            memoryUsageSetting = MemoryUsageSetting.setupMixed(maxMainMemoryBytes);
+        }
+
+        if (scratchDirectory != null) {
+            memoryUsageSetting.setTempDir(scratchDirectory);
+        }
+
+        return memoryUsageSetting;
+    }
+
+    static float getResolution(RequestConfig requestConfig) {
+        return max(DEFAULT_RESOLUTION * requestConfig.getQuality(), MIN_RESOLUTION);
+    }
+
+    /**
+     * The lowest resolution (but not more than {@code maxResolution}) at which the text lines of the page are about
+     * {@link #TARGET_TEXT_LINE_HEIGHT} pixels high, as measured on a rendering at low resolution.
+     *
+     * @param pageIdx starts at 0
+     */
+    static float getAdaptiveResolution(PDFRenderer renderer, int pageIdx, float maxResolution) throws IOException {
+        BufferedImage probe = renderer.renderImageWithDPI(pageIdx, PROBE_RESOLUTION, GRAY);
+        double textLineHeight = estimateTextLineHeight(probe);
+        if (textLineHeight <= 0) {
+            return maxResolution;
+        }
+
+        float resolution = (float) (PROBE_RESOLUTION * TARGET_TEXT_LINE_HEIGHT / textLineHeight);
+        logger.info("text line height: " + textLineHeight + " -> resolution: " + resolution);
+        return min(maxResolution, max(resolution, MIN_RESOLUTION));
+    }
+
+    /**
+     * Median height of the runs of rows containing dark pixels (i.e. horizontal projection profile), leaving out the
+     * runs too high to be a single text line.
+     *
+     * @return 0 if there are not enough text lines to tell, or if most of the text is in runs of merged lines
+     */
+    static double estimateTextLineHeight(BufferedImage grayImage) {
+        Raster raster = grayImage.getRaster();
+        int width = raster.getWidth();
+        int minDarkPixels = max(1, (int) (MIN_DARK_PIXELS_PER_TEXT_ROW * width));
+
+        DescriptiveStatistics runHeights = new DescriptiveStatistics();
+        int[] row = new int[width];
+        int runHeight = 0;
+        int darkRows = 0;
+        int mergedRows = 0;
+        for (int y = 0; y < raster.getHeight(); y++) {
+            raster.getSamples(0, y, width, 1, 0, row);
+            int darkPixels = 0;
+            for (int sample : row) {
+                if (sample < DARK_PIXEL_LEVEL) {
+                    darkPixels++;
+                }
+            }
+
+            if (darkPixels >= minDarkPixels) {
+                runHeight++;
+                darkRows++;
+            } else if (runHeight > 0) {
+                mergedRows += addRunHeight(runHeights, runHeight);
+                runHeight = 0;
+            }
+        }
+        if (runHeight > 0) {
+            mergedRows += addRunHeight(runHeights, runHeight);
+        }
+
+        if (runHeights.getN() < MIN_TEXT_LINES || mergedRows > MAX_MERGED_ROWS_RATIO * darkRows) {
+            return 0;
+        }
+
+        return runHeights.getPercentile(50);
+    }
+
+    /**
+     * @return the number of rows of the run if it is left out as merged lines, or else 0
+     */
+    private static int addRunHeight(DescriptiveStatistics runHeights, int runHeight) {
+        if (runHeight > MAX_TEXT_LINE_HEIGHT) {
+            return runHeight;
+        }
+
+        runHeights.addValue(runHeight);
+        return 0;
+    }
+
+    /**
+     * If the page is nothing but one scanned image (typically JBIG2, CCITT or JPEG), decode that image at its native
+     * resolution rather than rendering the page. The content stream must draw that image over the whole page, and
+     * nothing else (see {@link ScanImageChecker}).
+     *
+     * @return null if the page has any other content, in which case it must be rendered
+     */
+    static BufferedImage extractScanImage(PDPage page) throws IOException {
+        PDResources resources = page.getResources();
+        if (page.getRotation() != 0 || resources == null || resources.getFontNames().iterator().hasNext()) {
+            return null;
+        }
+
+        PDImageXObject image = null;
+        for (COSName name : resources.getXObjectNames()) {
+            if (image != null || !resources.isImageXObject(name)) {
+                return null;
+            }
+            image = (PDImageXObject) resources.getXObject(name);
+        }
+
+        // a stencil only gives the shape, the color it is filled with comes from the content stream
+        if (image == null || image.isStencil()) {
+            return null;
+        }
+
+        PDRectangle cropBox = page.getCropBox();
+        double pageAspectRatio = cropBox.getWidth() / cropBox.getHeight();
+        double imageAspectRatio = image.getWidth() / (double) image.getHeight();
+        if (abs(pageAspectRatio - imageAspectRatio) > MAX_SCAN_ASPECT_RATIO_DELTA * pageAspectRatio) {
+            return null;
+        }
+
+        float nativeResolution = image.getWidth() / (cropBox.getWidth() / 72f);
+        if (nativeResolution < MIN_RESOLUTION || !new ScanImageChecker(page, image).isOnlyContent()) {
+            return null;
+        }
+
+        return toGray(image.getImage());
+    }
+
     public static Map<Integer, BufferedImage> getImagesMap(RequestConfig requestConfig) {
-        return getImagesMapAsStream(requestConfig)
-                .collect(toMap(ImmutablePair::getLeft, ImmutablePair::getRight));
+        try (PDFDocumentSession session = new PDFDocumentSession(requestConfig)) {
+            return session
+                    .getImagesMapAsStream()
+                    .collect(toMap(ImmutablePair::getLeft, ImmutablePair::getRight));
+        }
     }
 
+    /**
+     * The underlying document is released when the stream is closed.
+     */
     public static Stream<ImmutablePair<Integer, BufferedImage>> getImagesMapAsStream(RequestConfig requestConfig) {
-        assert requestConfig.getMinPage() >= 1;
-        assert requestConfig.getMaxPage() < Integer.MAX_VALUE;
-
-        final int begin = requestConfig.getMinPage();
-        final int end = requestConfig.getMaxPage();
-
-        final float resolution = max(DEFAULT_RESOLUTION * requestConfig.getQuality(), MIN_RESOLUTION);
-
-        return IntStream
-                .rangeClosed(begin, end)
-                .parallel()
-                .mapToObj(pageIdx -> {
-                    try (PDDocument document = loadDocument(requestConfig)) {
-                        logger.info("loading page " + (pageIdx - 1));
-                        PDFRenderer pdfRenderer = new PDFRenderer(document);
-                        BufferedImage bufferedImage = pdfRenderer.renderImageWithDPI((pageIdx - 1), resolution, GRAY);
-                        return new ImmutablePair<>(pageIdx, bufferedImage);
-                    } catch (IOException e) {
-                        logger.warning(e.toString());
-                        return null;
-                    }
-                })
-                .filter(Objects::nonNull);
+        PDFDocumentSession session = new PDFDocumentSession(requestConfig);
+        return session.getImagesMapAsStream().onClose(session::close);
     }
 }
-
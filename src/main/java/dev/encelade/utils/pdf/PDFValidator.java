@@ -9,6 +9,8 @@ import java.io.File;
 import java.io.IOException;
 import java.util.logging.Logger;
 
+import static dev.encelade.utils.pdf.PDFUtils.getMemoryUsageSetting;
+
 @Getter
 @Setter
 public class PDFValidator {
@@ -18,6 +20,10 @@ public class PDFValidator {
     private byte[] pdfData;
     private File pdfFile;
 
+    // see RequestConfig
+    private Long maxMainMemoryBytes;
+    private File scratchDirectory;
+
     @Setter(AccessLevel.NONE)
     private boolean valid;
 
@@ -25,18 +31,11 @@ public class PDFValidator {
     private int numberOfPages;
 
     private PDDocument loadDocument() throws IOException {
-        if (pdfData != null) {
-            return PDDocument.load(pdfData);
-        } else if (pdfFile != null) {
-            return PDDocument.load(pdfFile);
-        } else {
-            throw new IllegalStateException();
-        }
+        return PDFUtils.loadDocument(pdfFile, pdfData, getMemoryUsageSetting(maxMainMemoryBytes, scratchDirectory));
     }
 
     public void validate() {
-        try {
-            PDDocument document = loadDocument();
+        try (PDDocument document = loadDocument()) {
             valid = true;
             numberOfPages = document.getNumberOfPages();
         } catch (IOException e) {
@@ -0,0 +1,140 @@
+package dev.encelade.utils.pdf;
+
+import org.apache.pdfbox.contentstream.PDFGraphicsStreamEngine;
+import org.apache.pdfbox.cos.COSArray;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.pdmodel.graphics.image.PDImage;
+import org.apache.pdfbox.pdmodel.graphics.image.PDImageXObject;
+import org.apache.pdfbox.util.Matrix;
+
+import java.awt.geom.Point2D;
+import java.io.IOException;
+
+import static java.lang.Math.abs;
+
+/**
+ * Goes through the content stream of a page to check that the only thing it paints is one given image, drawn once,
+ * unrotated and over the whole crop box; i.e. that the image can replace the rendering of the page.
+ * <br>Building paths and clipping is fine, but filling or stroking them, shadings, text and any other image (inline
+ * ones included) are content the image doesn't have.
+ */
+class ScanImageChecker extends PDFGraphicsStreamEngine {
+
+    // tolerance on the position and size of the image, of the size of the crop box
+    private static final double MAX_DELTA = 0.02;
+
+    private final PDPage page;
+    private final PDImageXObject image;
+
+    private final Point2D.Float currentPoint = new Point2D.Float();
+    private int drawnImages = 0;
+    private boolean otherContent = false;
+
+    ScanImageChecker(PDPage page, PDImageXObject image) {
+        super(page);
+        this.page = page;
+        this.image = image;
+    }
+
+    boolean isOnlyContent() throws IOException {
+        processPage(page);
+        return !otherContent && drawnImages == 1;
+    }
+
+    @Override
+    public void drawImage(PDImage pdImage) {
+        if (!(pdImage instanceof PDImageXObject) || ((PDImageXObject) pdImage).getCOSObject() != image.getCOSObject()) {
+            otherContent = true;
+            return;
+        }
+
+        drawnImages++;
+        if (!coversCropBox(getGraphicsState().getCurrentTransformationMatrix())) {
+            otherContent = true;
+        }
+    }
+
+    /**
+     * The image is drawn in the unit square, transformed by the matrix.
+     */
+    private boolean coversCropBox(Matrix matrix) {
+        PDRectangle cropBox = page.getCropBox();
+        double maxDeltaX = MAX_DELTA * cropBox.getWidth();
+        double maxDeltaY = MAX_DELTA * cropBox.getHeight();
+
+        return abs(matrix.getShearX()) <= maxDeltaX && abs(matrix.getShearY()) <= maxDeltaY
+                && abs(matrix.getScaleX() - cropBox.getWidth()) <= maxDeltaX
+                && abs(matrix.getScaleY() - cropBox.getHeight()) <= maxDeltaY
+                && abs(matrix.getTranslateX() - cropBox.getLowerLeftX()) <= maxDeltaX
+                && abs(matrix.getTranslateY() - cropBox.getLowerLeftY()) <= maxDeltaY;
+    }
+
+    @Override
+    protected void showTextString(byte[] string) {
+        otherContent = true;
+    }
+
+    @Override
+    protected void showTextStrings(COSArray array) {
+        otherContent = true;
+    }
+
+    @Override
+    public void strokePath() {
+        otherContent = true;
+    }
+
+    @Override
+    public void fillPath(int windingRule) {
+        otherContent = true;
+    }
+
+    @Override
+    public void fillAndStrokePath(int windingRule) {
+        otherContent = true;
+    }
+
+    @Override
+    public void shadingFill(COSName shadingName) {
+        otherContent = true;
+    }
+
+    @Override
+    public void appendRectangle(Point2D p0, Point2D p1, Point2D p2, Point2D p3) {
+        currentPoint.setLocation(p0);
+    }
+
+    @Override
+    public void clip(int windingRule) {
+    }
+
+    @Override
+    public void moveTo(float x, float y) {
+        currentPoint.setLocation(x, y);
+    }
+
+    @Override
+    public void lineTo(float x, float y) {
+        currentPoint.setLocation(x, y);
+    }
+
+    @Override
+    public void curveTo(float x1, float y1, float x2, float y2, float x3, float y3) {
+        currentPoint.setLocation(x3, y3);
+    }
+
+    @Override
+    public Point2D getCurrentPoint() {
+        return currentPoint;
+    }
+
+    @Override
+    public void closePath() {
+    }
+
+    @Override
+    public void endPath() {
+    }
+}
@@ -0,0 +1,174 @@
+package dev.encelade.utils.raster;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.logging.Logger;
+
+/**
+ * Keeps the pixels of the pages (packed gray, see {@link PackedGrayRasterStore}) outside of the heap, in a temporary
+ * file mapped in memory, so the heap doesn't grow with the number of pages of the document.
+ * <br>Each page gets its own region of the file. Released regions are merged with their free neighbours, and a new
+ * page takes the first free range big enough (split if larger), or else extends the free range at the end of the
+ * file, or else the file itself. The file then stays about as big as the pages not paginated yet at the worst of the
+ * processing, plus fragmentation. The file is deleted when the factory is closed.
+ */
+public class MappedRasterStoreFactory implements RasterStoreFactory {
+
+    private final static Logger logger = Logger.getLogger(MappedRasterStoreFactory.class.getName());
+
+    private final File file;
+    private final RandomAccessFile randomAccessFile;
+    private final FileChannel channel;
+
+    // free ranges of the file: offset -> length, never adjacent to each other
+    private final TreeMap<Long, Long> freeRanges = new TreeMap<>();
+    private long fileLength = 0;
+    private boolean closed = false;
+
+    /**
+     * @param directory null for the default temporary directory
+     */
+    public MappedRasterStoreFactory(File directory) {
+        try {
+            this.file = File.createTempFile("rasters", ".bin", directory);
+            this.file.deleteOnExit();
+            this.randomAccessFile = new RandomAccessFile(file, "rw");
+            this.channel = randomAccessFile.getChannel();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public RasterStore store(BufferedImage image) {
+        byte[] pixels = PackedGrayRasterStore.getPixels(image);
+        long offset = allocate(pixels.length);
+
+        MappedByteBuffer region;
+        try {
+            region = channel.map(FileChannel.MapMode.READ_WRITE, offset, pixels.length);
+        } catch (IOException e) {
+            free(offset, pixels.length);
+            throw new RuntimeException(e);
+        }
+        region.put(pixels);
+
+        return new MappedRasterStore(region, offset, image.getWidth(), image.getHeight());
+    }
+
+    /**
+     * @return the offset of the allocated range
+     */
+    private synchronized long allocate(long size) {
+        if (closed) {
+            throw new IllegalStateException();
+        }
+
+        for (Map.Entry<Long, Long> freeRange : freeRanges.entrySet()) {
+            long offset = freeRange.getKey();
+            long length = freeRange.getValue();
+            if (length >= size) {
+                freeRanges.remove(offset);
+                if (length > size) {
+                    freeRanges.put(offset + size, length - size);
+                }
+                return offset;
+            }
+        }
+
+        // the free range at the end of the file (if any) is extended
+        Map.Entry<Long, Long> lastFreeRange = freeRanges.lastEntry();
+        if (lastFreeRange != null && lastFreeRange.getKey() + lastFreeRange.getValue() == fileLength) {
+            long offset = lastFreeRange.getKey();
+            freeRanges.remove(offset);
+            fileLength = offset + size;
+            return offset;
+        }
+
+        long offset = fileLength;
+        fileLength += size;
+        return offset;
+    }
+
+    private synchronized void free(long offset, long length) {
+        if (closed) {
+            return;
+        }
+
+        Map.Entry<Long, Long> previous = freeRanges.lowerEntry(offset);
+        if (previous != null && previous.getKey() + previous.getValue() == offset) {
+            offset = previous.getKey();
+            length += previous.getValue();
+            freeRanges.remove(offset);
+        }
+
+        Long nextLength = freeRanges.remove(offset + length);
+        if (nextLength != null) {
+            length += nextLength;
+        }
+
+        freeRanges.put(offset, length);
+    }
+
+    /**
+     * The mapped regions are only unmapped once they are garbage collected, the stores must not be used after that.
+     */
+    @Override
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+
+        closed = true;
+        freeRanges.clear();
+        logger.info("raster file: " + (fileLength / 1024) + " KB");
+        try {
+            channel.close();
+            randomAccessFile.close();
+        } catch (IOException e) {
+            logger.warning(e.toString());
+        }
+        if (!file.delete()) {
+            logger.warning("could not delete " + file);
+        }
+    }
+
+    private class MappedRasterStore implements RasterStore {
+
+        private final long offset;
+        private final int width;
+        private final int height;
+        private MappedByteBuffer region;
+
+        private MappedRasterStore(MappedByteBuffer region, long offset, int width, int height) {
+            this.region = region;
+            this.offset = offset;
+            this.width = width;
+            this.height = height;
+        }
+
+        @Override
+        public BufferedImage getImage() {
+            byte[] pixels = new byte[width * height];
+            ByteBuffer buffer = region.duplicate();
+            buffer.rewind();
+            buffer.get(pixels);
+            return PackedGrayRasterStore.wrap(pixels, width, height);
+        }
+
+        @Override
+        public void release() {
+            if (region != null) {
+                free(offset, region.capacity());
+                region = null;
+            }
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package dev.encelade.utils.raster;
+
+import dev.encelade.utils.ImageUtils;
+
+import java.awt.*;
+import java.awt.color.ColorSpace;
+import java.awt.image.BufferedImage;
+import java.awt.image.ComponentColorModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.Raster;
+import java.awt.image.WritableRaster;
+import java.io.ByteArrayOutputStream;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * The pixels of the image in gray levels, 1 byte each, row after row. Lossless, and without a codec when not
+ * compressed: the image is a {@link BufferedImage#TYPE_BYTE_GRAY TYPE_BYTE_GRAY} wrapped around the stored bytes.
+ */
+public class PackedGrayRasterStore implements RasterStore {
+
+    private static final ComponentColorModel GRAY_COLOR_MODEL = new ComponentColorModel(
+            ColorSpace.getInstance(ColorSpace.CS_GRAY), new int[]{8}, false, true, Transparency.OPAQUE, DataBuffer.TYPE_BYTE);
+
+    private final int width;
+    private final int height;
+    private final boolean compressed;
+    private byte[] data;
+
+    public PackedGrayRasterStore(BufferedImage image, boolean compressed) {
+        this.width = image.getWidth();
+        this.height = image.getHeight();
+        this.compressed = compressed;
+
+        byte[] pixels = getPixels(image);
+        this.data = compressed ? deflate(pixels) : pixels;
+    }
+
+    /**
+     * @return the gray levels of the image, row after row
+     */
+    public static byte[] getPixels(BufferedImage image) {
+        BufferedImage grayImage = ImageUtils.toGray(image);
+        return (byte[]) grayImage.getRaster().getDataElements(0, 0, grayImage.getWidth(), grayImage.getHeight(), null);
+    }
+
+    /**
+     * @param pixels gray levels, row after row, used by the image without copy
+     */
+    public static BufferedImage wrap(byte[] pixels, int width, int height) {
+        DataBufferByte dataBuffer = new DataBufferByte(pixels, width * height);
+        WritableRaster raster = Raster.createInterleavedRaster(dataBuffer, width, height, width, 1, new int[]{0}, null);
+        return new BufferedImage(GRAY_COLOR_MODEL, raster, false, null);
+    }
+
+    @Override
+    public BufferedImage getImage() {
+        return wrap(compressed ? inflate(data, width * height) : data, width, height);
+    }
+
+    @Override
+    public void release() {
+        data = null;
+    }
+
+    private static byte[] deflate(byte[] pixels) {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        deflater.setInput(pixels);
+        deflater.finish();
+
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream(pixels.length / 4);
+        byte[] buffer = new byte[64 * 1024];
+        while (!deflater.finished()) {
+            outputStream.write(buffer, 0, deflater.deflate(buffer));
+        }
+        deflater.end();
+        return outputStream.toByteArray();
+    }
+
+    private static byte[] inflate(byte[] data, int size) {
+        Inflater inflater = new Inflater();
+        inflater.setInput(data);
+
+        byte[] pixels = new byte[size];
+        try {
+            int offset = 0;
+            while (offset < size && !inflater.finished()) {
+                offset += inflater.inflate(pixels, offset, size - offset);
+            }
+        } catch (DataFormatException e) {
+            throw new RuntimeException(e);
+        } finally {
+            inflater.end();
+        }
+        return pixels;
+    }
+}
@@ -0,0 +1,20 @@
+package dev.encelade.utils.raster;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * Keeps the image of a page between the stages of the processing, in a form that is cheaper to hold than a
+ * {@link BufferedImage}.
+ */
+public interface RasterStore {
+
+    /**
+     * The returned image may share its data with the store, so it must not be modified.
+     */
+    BufferedImage getImage();
+
+    /**
+     * Free the data, the image can not be read any more.
+     */
+    void release();
+}
@@ -0,0 +1,17 @@
+package dev.encelade.utils.raster;
+
+import java.awt.image.BufferedImage;
+import java.io.Closeable;
+
+@FunctionalInterface
+public interface RasterStoreFactory extends Closeable {
+
+    RasterStore store(BufferedImage image);
+
+    /**
+     * Free what is shared by all the stores of the factory, once none of them is used any more.
+     */
+    @Override
+    default void close() {
+    }
+}
@@ -0,0 +1,36 @@
+package dev.encelade.utils.raster;
+
+import java.io.File;
+
+public enum RasterStoreType {
+
+    // lossy, the smallest in memory, but each access decodes the image
+    JPEG,
+
+    // 1 byte per pixel, the image is wrapped around the bytes without decoding
+    PACKED_GRAY,
+
+    // packed gray, compressed with Deflate (lossless)
+    DEFLATED_GRAY,
+
+    // packed gray, outside of the heap in a temporary file mapped in memory
+    MAPPED;
+
+    /**
+     * @param scratchDirectory where the temporary files are created, null for the default temporary directory
+     */
+    public RasterStoreFactory createFactory(File scratchDirectory) {
+        switch (this) {
+            case JPEG:
+                return JpegRasterStore::new;
+            case PACKED_GRAY:
+                return image -> new PackedGrayRasterStore(image, false);
+            case DEFLATED_GRAY:
+                return image -> new PackedGrayRasterStore(image, true);
+            case MAPPED:
+                return new MappedRasterStoreFactory(scratchDirectory);
+            default:
+                throw new IllegalArgumentException();
+        }
+    }
+}
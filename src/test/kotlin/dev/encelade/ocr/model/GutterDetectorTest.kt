@@ -0,0 +1,90 @@
+package dev.encelade.ocr.model
+
+import org.junit.Assert.assertEquals
+import org.junit.Test
+import java.awt.Rectangle
+import java.util.Random
+
+class GutterDetectorTest {
+
+    /**
+     * The columns 901 to 1099 cross no word: the gutter is in their middle.
+     */
+    @Test
+    fun twoPagesSpread() {
+        val words = linesOfWords(100, 900) + linesOfWords(1100, 1900)
+
+        assertEquals(1000, detect(words))
+    }
+
+    @Test
+    fun singlePage() {
+        assertEquals(-1, detect(linesOfWords(100, 1900)))
+    }
+
+    /**
+     * On a few centered lines, the space between 2 words can be at the same x on all the lines, but it is narrower
+     * than a gutter.
+     */
+    @Test
+    fun alignedSpacesOnSparsePage() {
+        val words = (0 until 3).flatMap { line ->
+            listOf(Rectangle(700, 300 + line * 40, 290, 20), Rectangle(1005, 300 + line * 40, 295, 20))
+        }
+
+        assertEquals(-1, detect(words))
+    }
+
+    /**
+     * One word among many can cross the gutter. When it only covers the left half of the gutter, the gutter is in the
+     * middle of the other half.
+     */
+    @Test
+    fun wordCrossingTheCenter() {
+        val words = linesOfWords(100, 900) + linesOfWords(1100, 1900)
+
+        assertEquals(1000, detect(words + Rectangle(850, 2500, 300, 20)))
+        assertEquals(1050, detect(words + Rectangle(850, 2500, 150, 20)))
+    }
+
+    /**
+     * Crossing the whole center of a page with few words, it is too many of them for a gutter.
+     */
+    @Test
+    fun wordCrossingTheCenterOfFewWords() {
+        val words = listOf(Rectangle(300, 100, 400, 20), Rectangle(1300, 100, 400, 20), Rectangle(700, 200, 600, 20))
+
+        assertEquals(-1, detect(words))
+    }
+
+    private companion object {
+
+        const val WIDTH = 2000
+        const val HEIGHT = 2800
+
+        // as Page
+        const val MAX_RATIO_INTERSECTING_WORDS = 0.01
+
+        fun detect(rectangles: List<Rectangle>): Int {
+            val geometry = WordsGeometry(rectangles.map { Word(it, null) })
+            return GutterDetector(geometry, WIDTH, HEIGHT).detect(MAX_RATIO_INTERSECTING_WORDS)
+        }
+
+        /**
+         * Lines of words of random widths, filling [x1, x2] exactly.
+         */
+        fun linesOfWords(x1: Int, x2: Int): List<Rectangle> {
+            val random = Random(42)
+            val words = mutableListOf<Rectangle>()
+            for (y in 200 until 2400 step 40) {
+                var x = x1
+                while (x < x2) {
+                    val wordWidth = minOf(20 + random.nextInt(100), x2 - x)
+                    words.add(Rectangle(x, y, wordWidth, 20))
+                    x += wordWidth + 12
+                }
+            }
+            return words
+        }
+    }
+}
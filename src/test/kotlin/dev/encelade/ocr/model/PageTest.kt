@@ -0,0 +1,150 @@
+package dev.encelade.ocr.model
+
+import org.junit.Assert.assertEquals
+import org.junit.Test
+import java.awt.Rectangle
+import java.awt.geom.Line2D
+import java.util.Random
+
+class PageTest {
+
+    @Test
+    fun cleanUpMergesOverlappingBlocks() {
+        val rectangles = listOf(
+                Rectangle(0, 0, 100, 50),
+                Rectangle(80, 30, 100, 50),
+                Rectangle(300, 0, 50, 50),
+                Rectangle(300, 0, 50, 50),
+                Rectangle(500, 500, 10, 10)
+        )
+
+        val cleanedUp = cleanUp(rectangles)
+
+        assertEquals(setOf(Rectangle(0, 0, 180, 80), Rectangle(300, 0, 50, 50), Rectangle(500, 500, 10, 10)), cleanedUp.toSet())
+        assertEquals(allPairsCleanUp(rectangles), cleanedUp.toSet())
+    }
+
+    /**
+     * C intersects neither A nor B, but it intersects the union of A and B.
+     */
+    @Test
+    fun cleanUpMergesChainedBlocks() {
+        val rectangles = listOf(
+                Rectangle(0, 0, 100, 20),
+                Rectangle(90, 10, 20, 100),
+                Rectangle(0, 50, 50, 50),
+                Rectangle(200, 200, 10, 10)
+        )
+
+        val cleanedUp = cleanUp(rectangles)
+
+        assertEquals(setOf(Rectangle(0, 0, 110, 110), Rectangle(200, 200, 10, 10)), cleanedUp.toSet())
+        assertEquals(allPairsCleanUp(rectangles), cleanedUp.toSet())
+    }
+
+    @Test
+    fun cleanUpLikeAllPairsLoop() {
+        val random = Random(42)
+        repeat(200) {
+            val rectangles = (0 until 1 + random.nextInt(40)).map {
+                Rectangle(random.nextInt(1000), random.nextInt(1000), 1 + random.nextInt(150), 1 + random.nextInt(60))
+            }
+
+            assertEquals(allPairsCleanUp(rectangles), cleanUp(rectangles).toSet())
+        }
+    }
+
+    /**
+     * The rows on both edges of a paragraph cross it.
+     */
+    @Test
+    fun whiteSpacesAroundParagraphs() {
+        val paragraphs = listOf(Rectangle(50, 10, 200, 10), Rectangle(50, 60, 200, 30), Rectangle(100, 70, 50, 40))
+
+        val whiteSpaces = Page.getWhiteSpaceRectangles(paragraphs, 300, 200)
+
+        assertEquals(listOf(Rectangle(0, 0, 300, 10), Rectangle(0, 21, 300, 39), Rectangle(0, 111, 300, 89)), whiteSpaces)
+        assertEquals(rowScanWhiteSpaces(paragraphs, 300, 200), whiteSpaces)
+    }
+
+    /**
+     * Including paragraphs beyond the edges of the page, and empty ones.
+     */
+    @Test
+    fun whiteSpacesLikeRowScan() {
+        val random = Random(42)
+        repeat(300) {
+            val width = 50 + random.nextInt(300)
+            val height = 50 + random.nextInt(300)
+            val paragraphs = (0 until random.nextInt(12)).map {
+                Rectangle(random.nextInt(width + 40) - 20, random.nextInt(height + 40) - 20, random.nextInt(width / 2), random.nextInt(40))
+            }
+
+            assertEquals(rowScanWhiteSpaces(paragraphs, width, height), Page.getWhiteSpaceRectangles(paragraphs, width, height))
+        }
+    }
+
+    private companion object {
+
+        /**
+         * @return the rectangles of the merged blocks, checking that there is no duplicate
+         */
+        fun cleanUp(rectangles: List<Rectangle>): List<Rectangle> {
+            val textBlocks = rectangles.map { TextBlock(Rectangle(it), null) }
+            val cleanedUp = Page.cleanUp(textBlocks).map { it.rectangle }
+            assertEquals(cleanedUp.toSet().size, cleanedUp.size)
+            return cleanedUp
+        }
+
+        /**
+         * The former implementation: a horizontal line for each row of the page, tested against all the paragraphs.
+         */
+        fun rowScanWhiteSpaces(paragraphs: List<Rectangle>, width: Int, height: Int): List<Rectangle> {
+            val coordinates = mutableListOf<Int>()
+            var isIntersecting = true
+            for (y in 0 until height) {
+                val scanner = Line2D.Double(0.0, y.toDouble(), width.toDouble(), y.toDouble())
+                if (paragraphs.any { scanner.intersects(it) }) {
+                    if (!isIntersecting) {
+                        coordinates.add(y)
+                    }
+                    isIntersecting = true
+                } else {
+                    if (isIntersecting) {
+                        coordinates.add(y)
+                    }
+                    isIntersecting = false
+                }
+            }
+            if (!isIntersecting) {
+                coordinates.add(height)
+            }
+            return coordinates.chunked(2).map { Rectangle(0, it[0], width, it[1] - it[0]) }
+        }
+
+        /**
+         * The former implementation: merge all the intersecting pairs, until none is left.
+         */
+        fun allPairsCleanUp(rectangles: List<Rectangle>): Set<Rectangle> {
+            val all = rectangles.toMutableSet()
+            do {
+                var didMerge = false
+                val toRemove = mutableListOf<Rectangle>()
+                val merged = mutableListOf<Rectangle>()
+                for (r1 in all) {
+                    for (r2 in all) {
+                        if (r1 != r2 && r1.intersects(r2)) {
+                            merged.add(r1.union(r2))
+                            toRemove.add(r1)
+                            toRemove.add(r2)
+                            didMerge = true
+                        }
+                    }
+                }
+                all.removeAll(toRemove)
+                all.addAll(merged)
+            } while (didMerge)
+            return all
+        }
+    }
+}
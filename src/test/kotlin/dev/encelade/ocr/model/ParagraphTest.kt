@@ -0,0 +1,83 @@
+package dev.encelade.ocr.model
+
+import dev.encelade.utils.raster.JpegRasterStore
+import dev.encelade.utils.raster.RasterStoreFactory
+import org.junit.Assert.assertEquals
+import org.junit.Test
+import java.awt.Rectangle
+import java.awt.geom.Line2D
+import java.util.Random
+
+class ParagraphTest {
+
+    @Test
+    fun cutBetweenLines() {
+        val page = page(1000, 1000)
+        val lines = (0 until 10).map { Rectangle(100, 100 + it * 30, 600, 20) }
+        page.setWords(lines.map { Word(it, page) })
+        val paragraph = Paragraph(Rectangle(100, 100, 600, 290), page)
+
+        val yCuts = paragraph.getYCuts(2)
+
+        // around the middle (145), the first row crossing no line is the one after the bottom edge of the 5th line
+        assertEquals(listOf(141), yCuts)
+        assertEquals(collisionsScanYCuts(paragraph, 2), yCuts)
+    }
+
+    /**
+     * With words partly out of the paragraph, and paragraphs away from the left edge of the page (the tested lines go
+     * from x = 0 to the width of the paragraph).
+     */
+    @Test
+    fun cutsLikeCollisionsScan() {
+        val random = Random(42)
+        repeat(200) {
+            val page = page(1200, 1600)
+            val paragraphRectangle = Rectangle(random.nextInt(600), random.nextInt(800), 20 + random.nextInt(600), 20 + random.nextInt(700))
+            page.setWords((0 until random.nextInt(150)).map {
+                Word(Rectangle(
+                        paragraphRectangle.x - 20 + random.nextInt(paragraphRectangle.width + 40),
+                        paragraphRectangle.y - 10 + random.nextInt(paragraphRectangle.height + 20),
+                        1 + random.nextInt(100),
+                        1 + random.nextInt(30)), page)
+            })
+            val paragraph = Paragraph(paragraphRectangle, page)
+
+            for (pieces in 2..7) {
+                assertEquals(collisionsScanYCuts(paragraph, pieces), paragraph.getYCuts(pieces))
+            }
+        }
+    }
+
+    private companion object {
+
+        fun page(width: Int, height: Int): Page {
+            return Page.withoutImage(listOf(1), width, height, RasterStoreFactory { JpegRasterStore(it) })
+        }
+
+        /**
+         * The former implementation: for each cut, a line for each candidate y, tested against the included words.
+         */
+        fun collisionsScanYCuts(paragraph: Paragraph, pieces: Int): List<Int> {
+            val yCuts = mutableListOf<Int>()
+            val percent = 1.0 / pieces
+            for (i in 1 until pieces) {
+                val relativeCutY = paragraph.height * percent * i
+                val margin = (0.03 * paragraph.height).toInt()
+                val from = maxOf(0, relativeCutY.toInt() - margin)
+                val to = minOf(paragraph.height, relativeCutY.toInt() + margin)
+
+                // from and to + from (excluded), as the former IntStream.iterate(from).limit(to)
+                val yCut = (from until from + to).minByOrNull { y ->
+                    val line = Line2D.Double(0.0, (y + paragraph.y1).toDouble(), paragraph.width.toDouble(), (y + paragraph.y1).toDouble())
+                    paragraph.includedWords.count { it.intersects(line) }
+                }!!
+
+                if (paragraph.isValidCutToAdd(yCut, yCuts)) {
+                    yCuts.add(yCut)
+                }
+            }
+            return yCuts
+        }
+    }
+}
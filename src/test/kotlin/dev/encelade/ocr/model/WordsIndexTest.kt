@@ -0,0 +1,84 @@
+package dev.encelade.ocr.model
+
+import dev.encelade.utils.raster.JpegRasterStore
+import dev.encelade.utils.raster.RasterStoreFactory
+import org.junit.Assert.assertEquals
+import org.junit.Test
+import java.awt.Rectangle
+import java.awt.geom.Rectangle2D
+import java.util.Random
+
+class WordsIndexTest {
+
+    /**
+     * Areas at every position around a small page, so that their edges fall on all the boundaries of the cells, and
+     * partly or fully outside of the image.
+     */
+    @Test
+    fun wordsNearLikeLinearFilter() {
+        val page = pageWithRandomWords(Random(42), 200, 150, 40)
+
+        for (size in listOf(0, 1, 7, 33)) {
+            for (y in -40..190) {
+                for (x in -40..240) {
+                    val area = Rectangle(x, y, size, size)
+
+                    assertEquals("$area", linearWordsNear(page, area), page.getWordsNear(area))
+                    assertEquals("$area", linearHasWordIntersecting(page, area) { true }, page.hasWordIntersecting(area) { true })
+                }
+            }
+        }
+    }
+
+    @Test
+    fun randomAreasLikeLinearFilter() {
+        val random = Random(42)
+        repeat(50) {
+            val width = 100 + random.nextInt(2000)
+            val height = 100 + random.nextInt(2000)
+            val page = pageWithRandomWords(random, width, height, random.nextInt(400))
+
+            repeat(200) {
+                val area = Rectangle2D.Double(
+                        random.nextDouble() * (width + 200) - 100, random.nextDouble() * (height + 200) - 100,
+                        random.nextDouble() * width / 3, random.nextDouble() * height / 3)
+                assertEquals("$area", linearWordsNear(page, area), page.getWordsNear(area))
+
+                val rectangle = area.bounds
+                val filtered = random.nextInt(3)
+                val filter = { word: Word -> word.text.length % 3 != filtered }
+                assertEquals("$rectangle", linearHasWordIntersecting(page, rectangle, filter), page.hasWordIntersecting(rectangle, filter))
+            }
+        }
+    }
+
+    private companion object {
+
+        /**
+         * Including words partly outside of the image.
+         */
+        fun pageWithRandomWords(random: Random, width: Int, height: Int, nbrOfWords: Int): Page {
+            val page = Page.withoutImage(listOf(1), width, height, RasterStoreFactory { JpegRasterStore(it) })
+            page.setWords((0 until nbrOfWords).map {
+                val word = Word(Rectangle(random.nextInt(width + 20) - 10, random.nextInt(height + 20) - 10, random.nextInt(60), random.nextInt(20)), page)
+                word.text = "a".repeat(1 + random.nextInt(6))
+                word
+            })
+            return page
+        }
+
+        /**
+         * The words whose rectangle overlaps or touches the area.
+         */
+        fun linearWordsNear(page: Page, area: Rectangle2D): List<Word> {
+            return page.words.filter {
+                it.rectangle.x <= area.maxX && it.rectangle.x + it.rectangle.width >= area.minX
+                        && it.rectangle.y <= area.maxY && it.rectangle.y + it.rectangle.height >= area.minY
+            }
+        }
+
+        fun linearHasWordIntersecting(page: Page, rectangle: Rectangle, filter: (Word) -> Boolean): Boolean {
+            return page.words.any { it.rectangle.intersects(rectangle) && filter(it) }
+        }
+    }
+}
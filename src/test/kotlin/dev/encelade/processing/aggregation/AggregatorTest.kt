@@ -0,0 +1,107 @@
+package dev.encelade.processing.aggregation
+
+import dev.encelade.ocr.model.Page
+import dev.encelade.ocr.model.TextLine
+import dev.encelade.ocr.model.TextZone
+import dev.encelade.ocr.model.Word
+import dev.encelade.utils.raster.JpegRasterStore
+import dev.encelade.utils.raster.RasterStoreFactory
+import org.junit.Assert.assertEquals
+import org.junit.Test
+import java.awt.Rectangle
+import java.util.Random
+import java.util.function.BiPredicate
+
+class AggregatorTest {
+
+    /**
+     * The third word intersects the expanded rectangles of both words on the same y: it goes to the first group.
+     */
+    @Test
+    fun groupWordsOnTieLikeAllGroupsLoop() {
+        val words = listOf(
+                Word(Rectangle(0, 100, 100, 20), null),
+                Word(Rectangle(300, 100, 100, 20), null),
+                Word(Rectangle(110, 100, 180, 20), null)
+        )
+
+        val groups = groupIndexes(SameLinePredicate(), words)
+
+        assertEquals(listOf(listOf(0, 2), listOf(1)), groups)
+        assertEquals(allGroupsIndexes(SameLinePredicate(), words), groups)
+    }
+
+    @Test
+    fun groupWordsLikeAllGroupsLoop() {
+        val random = Random(42)
+        repeat(100) {
+            val words = (0 until 1 + random.nextInt(200)).map {
+                Word(Rectangle(random.nextInt(1000), random.nextInt(1000), 5 + random.nextInt(100), 5 + random.nextInt(30)), null)
+            }
+
+            assertEquals(allGroupsIndexes(SameLinePredicate(), words), groupIndexes(SameLinePredicate(), words))
+        }
+    }
+
+    /**
+     * The third line is below the lowest lines of both blocks, which are at the same y: it goes to the first block,
+     * then becomes its lowest line.
+     */
+    @Test
+    fun groupLinesOnTieLikeAllGroupsLoop() {
+        val lines = linesOnPage(listOf(
+                Rectangle(0, 0, 100, 20),
+                Rectangle(300, 0, 100, 20),
+                Rectangle(0, 25, 400, 20),
+                Rectangle(300, 50, 100, 20)
+        ))
+
+        val groups = groupIndexes(SameTextBlockPredicate(), lines)
+
+        assertEquals(listOf(listOf(0, 2, 3), listOf(1)), groups)
+        assertEquals(allGroupsIndexes(SameTextBlockPredicate(), lines), groups)
+    }
+
+    @Test
+    fun groupLinesLikeAllGroupsLoop() {
+        val random = Random(42)
+        repeat(100) {
+            val lines = linesOnPage((0 until 1 + random.nextInt(100)).map {
+                Rectangle(random.nextInt(50) * 20, random.nextInt(100) * 10, 20 + random.nextInt(400), 10 + random.nextInt(15))
+            }.sortedBy { it.y })
+
+            assertEquals(allGroupsIndexes(SameTextBlockPredicate(), lines), groupIndexes(SameTextBlockPredicate(), lines))
+        }
+    }
+
+    private companion object {
+
+        /**
+         * Each line is made of one word of the same rectangle.
+         */
+        fun linesOnPage(rectangles: List<Rectangle>): List<TextLine> {
+            val page = Page.withoutImage(listOf(1), 2000, 2000, RasterStoreFactory { JpegRasterStore(it) })
+            page.setWords(rectangles.map { Word(Rectangle(it), page) })
+            return rectangles.map { TextLine(Rectangle(it), page) }
+        }
+
+        fun <T : TextZone> groupIndexes(predicate: SweepablePredicate<T>, elements: List<T>): List<List<Int>> {
+            return toIndexes(Aggregator(predicate, elements).buildGroups(), elements)
+        }
+
+        /**
+         * Groups built by testing each element against all the groups, as the predicate is not a sweepable one.
+         */
+        fun <T : TextZone> allGroupsIndexes(predicate: SweepablePredicate<T>, elements: List<T>): List<List<Int>> {
+            val allGroupsPredicate = BiPredicate<T, List<T>> { element, group -> predicate.test(element, group) }
+            return toIndexes(Aggregator(allGroupsPredicate, elements).buildGroups(), elements)
+        }
+
+        /**
+         * By identity, as several elements may have the same rectangle.
+         */
+        fun <T : TextZone> toIndexes(groups: List<List<T>>, elements: List<T>): List<List<Int>> {
+            return groups.map { group -> group.map { element -> elements.indexOfFirst { it === element } } }
+        }
+    }
+}
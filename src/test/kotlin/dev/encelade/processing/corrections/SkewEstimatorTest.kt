@@ -0,0 +1,77 @@
+package dev.encelade.processing.corrections
+
+import dev.encelade.utils.ImageUtils
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import java.awt.Color
+import java.awt.image.BufferedImage
+import java.awt.image.BufferedImage.TYPE_BYTE_GRAY
+import java.util.Random
+import kotlin.math.abs
+
+class SkewEstimatorTest {
+
+    @Test
+    fun straightPage() {
+        assertEquals(0.0, SkewEstimator().estimateCorrectiveAngle(linedPage()), 0.0)
+    }
+
+    /**
+     * The estimated angle straightens the page back, to the step of the fine search (0.05) rounded up.
+     */
+    @Test
+    fun straightenRotatedPage() {
+        val page = linedPage()
+
+        listOf(0.8, -1.3, 2.45, -4.1, 7.0).forEach { angle ->
+            val estimator = SkewEstimator()
+            val rotated = ImageUtils.rotate(page, angle)
+
+            val correctiveAngle = estimator.estimateCorrectiveAngle(rotated)
+            assertTrue("angle $angle -> $correctiveAngle", abs(angle + correctiveAngle) <= 0.1)
+
+            val deskewed = estimator.deskew(rotated, correctiveAngle)
+            assertEquals("angle $angle", 0.0, SkewEstimator().estimateCorrectiveAngle(deskewed), 0.0)
+        }
+    }
+
+    /**
+     * Skewed by more than the maximum angle, the estimation stays within it, as the angle correction only accepts
+     * angles below it.
+     */
+    @Test
+    fun stayWithinMaxAngle() {
+        val page = linedPage()
+
+        listOf(10.4, -10.4).forEach { angle ->
+            val correctiveAngle = SkewEstimator().estimateCorrectiveAngle(ImageUtils.rotate(page, angle))
+            assertTrue("angle $angle -> $correctiveAngle", abs(correctiveAngle) <= AngleCorrection.MAX_ANGLE)
+        }
+    }
+
+    private companion object {
+
+        /**
+         * White page with lines of black words.
+         */
+        fun linedPage(): BufferedImage {
+            val image = BufferedImage(1200, 1600, TYPE_BYTE_GRAY)
+            val g = image.createGraphics()
+            g.color = Color.WHITE
+            g.fillRect(0, 0, image.width, image.height)
+            g.color = Color.BLACK
+            val random = Random(42)
+            for (y in 150 until 1450 step 40) {
+                var x = 150
+                while (x < 1000) {
+                    val wordWidth = 20 + random.nextInt(80)
+                    g.fillRect(x, y, wordWidth, 14)
+                    x += wordWidth + 12
+                }
+            }
+            g.dispose()
+            return image
+        }
+    }
+}
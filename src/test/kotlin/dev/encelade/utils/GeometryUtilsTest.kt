@@ -0,0 +1,59 @@
+package dev.encelade.utils
+
+import org.junit.Assert.assertEquals
+import org.junit.Test
+import java.awt.Rectangle
+import java.util.Random
+
+class GeometryUtilsTest {
+
+    @Test
+    fun overlappingAreaSkipsEqualRectangles() {
+        val rectangles = listOf(Rectangle(0, 0, 100, 20), Rectangle(0, 0, 100, 20), Rectangle(50, 10, 100, 20))
+
+        // the 2 equal rectangles don't overlap each other, but both overlap the third one
+        assertEquals(1000.0, GeometryUtils.getOverlappingArea(rectangles), 0.0)
+        assertEquals(allPairsOverlappingArea(rectangles), GeometryUtils.getOverlappingArea(rectangles), 0.0)
+    }
+
+    /**
+     * Words as wide as high on average, swept along either axis, and lines, swept along y.
+     */
+    @Test
+    fun overlappingAreaLikeAllPairs() {
+        val random = Random(42)
+        repeat(300) {
+            val words = (0 until random.nextInt(80)).map {
+                Rectangle(random.nextInt(1000), random.nextInt(1000), random.nextInt(60), random.nextInt(60))
+            }
+            val lines = (0 until random.nextInt(80)).map {
+                Rectangle(random.nextInt(200), random.nextInt(1500), 600 + random.nextInt(800), random.nextInt(40))
+            }
+
+            listOf(words, lines, words + lines, words + words.take(5)).forEach { rectangles ->
+                assertEquals(allPairsOverlappingArea(rectangles), GeometryUtils.getOverlappingArea(rectangles), 0.0)
+            }
+        }
+    }
+
+    private companion object {
+
+        /**
+         * The former implementation: half the intersection of each ordered pair of different rectangles.
+         */
+        fun allPairsOverlappingArea(rectangles: List<Rectangle>): Double {
+            var overlappingArea = 0.0
+            for (rectangle1 in rectangles) {
+                for (rectangle2 in rectangles) {
+                    if (rectangle1 != rectangle2) {
+                        val intersection = GeometryUtils.intersection(rectangle1, rectangle2)
+                        if (intersection != null) {
+                            overlappingArea += intersection.width * intersection.height * 0.5
+                        }
+                    }
+                }
+            }
+            return overlappingArea
+        }
+    }
+}
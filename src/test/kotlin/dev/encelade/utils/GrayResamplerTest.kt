@@ -0,0 +1,140 @@
+package dev.encelade.utils
+
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import java.awt.Color
+import java.awt.Image
+import java.awt.image.BufferedImage
+import java.awt.image.BufferedImage.TYPE_BYTE_GRAY
+import java.util.Random
+import kotlin.math.abs
+
+class GrayResamplerTest {
+
+    /**
+     * On black and white pages only: SCALE_SMOOTH averages the colors once converted to sRGB, and not the gray levels
+     * themselves.
+     */
+    @Test
+    fun reduceLikeScaleSmooth() {
+        val image = syntheticPage(600, 200)
+
+        listOf(0.37, 0.5, 0.8).forEach { ratio ->
+            val newW = (600 * ratio).toInt()
+            val newH = (200 * ratio).toInt()
+
+            val resized = GrayResampler.resize(image, newW, newH)
+            val reference = scaleSmooth(image, newW, newH)
+
+            assertEquals(TYPE_BYTE_GRAY, resized.type)
+            assertEquals(newW, resized.width)
+            assertEquals(newH, resized.height)
+            assertTrue("ratio $ratio", maxDifference(resized, reference) <= 1)
+        }
+    }
+
+    @Test
+    fun keepUniformGrayLevels() {
+        val image = BufferedImage(300, 100, TYPE_BYTE_GRAY)
+        for (x in 0 until image.width) {
+            for (y in 0 until image.height) {
+                image.raster.setSample(x, y, 0, x / 3)
+            }
+        }
+
+        // each column of the result covers 3 columns of the same level
+        val resized = GrayResampler.resize(image, 100, 40)
+        for (x in 0 until resized.width) {
+            for (y in 0 until resized.height) {
+                assertEquals(x.toLong(), resized.raster.getSample(x, y, 0).toLong())
+            }
+        }
+    }
+
+    @Test
+    fun resizeIntoClipsToTarget() {
+        val image = syntheticPage(300, 100)
+        val resized = GrayResampler.resize(image, 150, 50)
+
+        val background = 7
+        val target = BufferedImage(100, 60, TYPE_BYTE_GRAY)
+        fill(target, background)
+
+        // sticks out of the top and the right of the target
+        GrayResampler.resizeInto(image, target, 30, -5, 150, 50)
+
+        for (y in 0 until target.height) {
+            for (x in 0 until target.width) {
+                val resizedX = x - 30
+                val resizedY = y + 5
+                val expected = if (resizedX in 0 until 150 && resizedY in 0 until 50) {
+                    resized.raster.getSample(resizedX, resizedY, 0)
+                } else {
+                    background
+                }
+                assertEquals("($x, $y)", expected.toLong(), target.raster.getSample(x, y, 0).toLong())
+            }
+        }
+    }
+
+    @Test
+    fun resizeIntoOutsideOfTarget() {
+        val target = BufferedImage(50, 50, TYPE_BYTE_GRAY)
+        fill(target, 7)
+
+        GrayResampler.resizeInto(syntheticPage(100, 100), target, 60, 0, 50, 50)
+
+        for (y in 0 until target.height) {
+            for (x in 0 until target.width) {
+                assertEquals(7L, target.raster.getSample(x, y, 0).toLong())
+            }
+        }
+    }
+
+    private companion object {
+
+        /**
+         * White page with black rectangles (words).
+         */
+        fun syntheticPage(width: Int, height: Int): BufferedImage {
+            val image = BufferedImage(width, height, TYPE_BYTE_GRAY)
+            val g = image.createGraphics()
+            g.color = Color.WHITE
+            g.fillRect(0, 0, width, height)
+            val random = Random(42)
+            g.color = Color.BLACK
+            repeat(width * height / 400) {
+                g.fillRect(random.nextInt(width), random.nextInt(height), 2 + random.nextInt(30), 2 + random.nextInt(8))
+            }
+            g.dispose()
+            return image
+        }
+
+        fun scaleSmooth(image: BufferedImage, newW: Int, newH: Int): BufferedImage {
+            val result = BufferedImage(newW, newH, TYPE_BYTE_GRAY)
+            val g = result.createGraphics()
+            g.drawImage(image.getScaledInstance(newW, newH, Image.SCALE_SMOOTH), 0, 0, null)
+            g.dispose()
+            return result
+        }
+
+        fun maxDifference(image1: BufferedImage, image2: BufferedImage): Int {
+            var max = 0
+            for (y in 0 until image1.height) {
+                for (x in 0 until image1.width) {
+                    max = maxOf(max, abs(image1.raster.getSample(x, y, 0) - image2.raster.getSample(x, y, 0)))
+                }
+            }
+            return max
+        }
+
+        fun fill(image: BufferedImage, level: Int) {
+            for (y in 0 until image.height) {
+                for (x in 0 until image.width) {
+                    image.raster.setSample(x, y, 0, level)
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package dev.encelade.utils
+
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import java.awt.Color
+import java.awt.RenderingHints
+import java.awt.geom.Point2D
+import java.awt.image.BufferedImage
+import java.awt.image.BufferedImage.TYPE_BYTE_GRAY
+import java.util.Random
+import kotlin.math.abs
+
+class ImageUtilsTest {
+
+    /**
+     * Inside the page, the rotation matches Java2D's bilinear drawing. On the edges of the page, Java2D doesn't blend
+     * with the white background while rotate does, hence differences up to half of the gray levels there.
+     */
+    @Test
+    fun rotateLikeJava2DBilinear() {
+        val image = syntheticPage(400, 300)
+
+        listOf(2.3, -4.1).forEach { angle ->
+            val rotated = ImageUtils.rotate(image, angle)
+            val reference = drawRotated(image, angle)
+            val size = ImageUtils.getRotatedSize(image.width, image.height, angle)
+            val inverse = ImageUtils.getRotationTransform(image.width, image.height, angle).createInverse()
+
+            assertEquals(TYPE_BYTE_GRAY, rotated.type)
+            assertEquals(size.width, rotated.width)
+            assertEquals(size.height, rotated.height)
+
+            var insidePixels = 0
+            var sumDifferences = 0L
+            val point = Point2D.Double()
+            for (y in 0 until rotated.height) {
+                for (x in 0 until rotated.width) {
+                    val sample = rotated.raster.getSample(x, y, 0)
+                    val difference = abs(sample - reference.raster.getSample(x, y, 0))
+
+                    point.setLocation(x + 0.5, y + 0.5)
+                    inverse.transform(point, point)
+                    when {
+                        isInside(point, image, 1.5) -> {
+                            assertTrue("angle $angle at ($x, $y)", difference <= 2)
+                            insidePixels++
+                            sumDifferences += difference
+                        }
+                        isInside(point, image, -1.0) -> assertTrue("angle $angle at ($x, $y)", difference <= 128)
+                        else -> assertEquals("angle $angle at ($x, $y)", 255L, sample.toLong())
+                    }
+                }
+            }
+
+            assertTrue("angle $angle", sumDifferences / insidePixels.toDouble() < 0.04)
+        }
+    }
+
+    private companion object {
+
+        /**
+         * White page with black rectangles (words) and a black frame, so the edges of the rotated page are visible.
+         */
+        fun syntheticPage(width: Int, height: Int): BufferedImage {
+            val image = BufferedImage(width, height, TYPE_BYTE_GRAY)
+            val g = image.createGraphics()
+            g.color = Color.WHITE
+            g.fillRect(0, 0, width, height)
+            g.color = Color.BLACK
+            g.drawRect(0, 0, width - 1, height - 1)
+            val random = Random(42)
+            repeat(width * height / 400) {
+                g.fillRect(random.nextInt(width), random.nextInt(height), 2 + random.nextInt(30), 2 + random.nextInt(8))
+            }
+            g.dispose()
+            return image
+        }
+
+        fun drawRotated(image: BufferedImage, angle: Double): BufferedImage {
+            val size = ImageUtils.getRotatedSize(image.width, image.height, angle)
+            val result = BufferedImage(size.width, size.height, TYPE_BYTE_GRAY)
+            val g = result.createGraphics()
+            g.color = Color.WHITE
+            g.fillRect(0, 0, size.width, size.height)
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR)
+            g.drawRenderedImage(image, ImageUtils.getRotationTransform(image.width, image.height, angle))
+            g.dispose()
+            return result
+        }
+
+        /**
+         * @param margin distance to the edges of the image, negative to be outside of it
+         */
+        fun isInside(point: Point2D, image: BufferedImage, margin: Double): Boolean {
+            return point.x >= margin && point.x <= image.width - margin
+                    && point.y >= margin && point.y <= image.height - margin
+        }
+    }
+}